@@ -7,8 +7,25 @@ import org.pluginmakers.antiafkplusplus.client.ai.ActionExecutor;
 import org.pluginmakers.antiafkplusplus.client.ai.EmergencyManager;
 import org.pluginmakers.antiafkplusplus.client.ai.MovementLearner;
 import org.pluginmakers.antiafkplusplus.client.ai.BasePerimeter;
+import org.pluginmakers.antiafkplusplus.client.ai.PerceptionSnapshot;
+import org.pluginmakers.antiafkplusplus.client.ai.TargetSampler;
 import org.pluginmakers.antiafkplusplus.client.automation.AutomationManager;
+import org.pluginmakers.antiafkplusplus.client.automation.ContainerSessionEngine;
 import org.pluginmakers.antiafkplusplus.client.config.AntiAFKConfig;
+import org.pluginmakers.antiafkplusplus.client.inventory.InventoryIndex;
+import org.pluginmakers.antiafkplusplus.client.network.OutboundArbiter;
+import org.pluginmakers.antiafkplusplus.client.path.HierarchicalPlanner;
+import org.pluginmakers.antiafkplusplus.client.path.NavGrid;
+import org.pluginmakers.antiafkplusplus.client.path.PathService;
+import org.pluginmakers.antiafkplusplus.client.scheduler.SubsystemScheduler;
+import org.pluginmakers.antiafkplusplus.client.scheduler.TickScheduler;
+import org.pluginmakers.antiafkplusplus.client.world.IncrementalScanner;
+import org.pluginmakers.antiafkplusplus.client.world.PoiRegistry;
+import org.pluginmakers.antiafkplusplus.client.world.SpatialQueryService;
+import net.minecraft.block.BlockState;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.chunk.WorldChunk;
 
 import java.util.concurrent.ThreadLocalRandom;
 
@@ -23,22 +40,69 @@ public class AntiAFKManager {
     private final AutomationManager automationManager;
     private final MovementLearner movementLearner;
     private final BasePerimeter basePerimeter;
+    private final TargetSampler targetSampler;
+    private final PoiRegistry poiRegistry;
+    private final SpatialQueryService spatialQueryService;
+    private final IncrementalScanner incrementalScanner;
+    private final PerceptionSnapshot perception;
+    private final InventoryIndex inventoryIndex;
+    private final TickScheduler scheduler;
+    private final SubsystemScheduler subsystems;
+    private final OutboundArbiter outbound;
+    private final NavGrid navGrid;
+    private final PathService pathService;
+    private final HierarchicalPlanner hierarchicalPlanner;
+    private final ContainerSessionEngine containerSessions;
     private final AntiAFKConfig config;
     
     private boolean enabled = false;
-    private long lastUpdateTime = 0;
-    private static final int UPDATE_INTERVAL = 50;
+    private static final int TICKS_PER_SECOND = 20;
     
     private AntiAFKManager() {
         this.client = MinecraftClient.getInstance();
-        this.aiCore = new AICore(client);
-        this.movementController = new MovementController(client);
-        this.actionExecutor = new ActionExecutor(client);
-        this.emergencyManager = new EmergencyManager(client);
-        this.automationManager = new AutomationManager(client);
-        this.movementLearner = new MovementLearner(client);
+        this.scheduler = new TickScheduler();
+        this.subsystems = new SubsystemScheduler();
+        this.outbound = new OutboundArbiter(client);
+        this.containerSessions = new ContainerSessionEngine(client, outbound);
+        this.poiRegistry = new PoiRegistry(client);
+        this.spatialQueryService = new SpatialQueryService(client, poiRegistry);
+        this.incrementalScanner = new IncrementalScanner(client, poiRegistry);
+        this.perception = new PerceptionSnapshot(client);
+        this.inventoryIndex = new InventoryIndex(client);
         this.basePerimeter = new BasePerimeter(client);
+        this.navGrid = new NavGrid(client);
+        this.targetSampler = new TargetSampler(client, navGrid, basePerimeter);
+        this.aiCore = new AICore(client, spatialQueryService, perception, targetSampler);
+        this.pathService = new PathService(client, scheduler, navGrid);
+        this.hierarchicalPlanner = new HierarchicalPlanner(client, navGrid);
+        this.movementController = new MovementController(client, outbound, pathService, navGrid, hierarchicalPlanner,
+            targetSampler);
+        this.automationManager = new AutomationManager(client, spatialQueryService, scheduler, containerSessions);
+        this.actionExecutor = new ActionExecutor(client, perception, scheduler, containerSessions, automationManager,
+            inventoryIndex, outbound);
+        this.emergencyManager = new EmergencyManager(client, inventoryIndex, outbound, navGrid);
+        this.movementLearner = new MovementLearner(client, scheduler, outbound, navGrid);
         this.config = AntiAFKConfig.getInstance();
+        registerSubsystems();
+    }
+    
+    // Cadences in client ticks; lower priority numbers run first within a tick
+    private void registerSubsystems() {
+        subsystems.register("emergency", 1, 0, SubsystemScheduler.CHEAP, emergencyManager::tick);
+        subsystems.register("scanning", 1, 1, SubsystemScheduler.COSTLY, () -> {
+            // Time budgeted per tick by the scanner itself; the registry tells the query service what changed
+            incrementalScanner.tick();
+        });
+        subsystems.register("perception", 1, 2, SubsystemScheduler.CHEAP, () -> {
+            perception.updatePlayer();
+            inventoryIndex.refresh();
+        });
+        subsystems.register("hostiles", 2, 3, SubsystemScheduler.COSTLY, perception::updateHostiles);
+        subsystems.register("ai", 1, 4, SubsystemScheduler.CHEAP, this::updateBehaviour);
+        subsystems.register("automation", 10, 5, SubsystemScheduler.CHEAP, automationManager::update);
+        subsystems.register("furnaces", config.furnaceCheckInterval * TICKS_PER_SECOND, 6, SubsystemScheduler.COSTLY,
+            automationManager::checkFurnaces);
+        subsystems.register("chat", TICKS_PER_SECOND, 7, SubsystemScheduler.CHEAP, this::maybeSendRandomChat);
     }
     
     public static AntiAFKManager getInstance() {
@@ -71,9 +135,25 @@ public class AntiAFKManager {
     }
     
     public void update() {
-        // Always record movement when disabled
+        // Rotations and slot switches from the whole tick go out once, at its end
+        outbound.beginTick();
+        try {
+            updateSubsystems();
+        } finally {
+            outbound.endTick();
+        }
+    }
+    
+    private void updateSubsystems() {
+        // Delayed tasks and worker results run on the client thread, before anything reads state
+        scheduler.tick();
+        containerSessions.tick();
+        
+        // Always record movement when disabled; the index keeps following the player so base
+        // setup commands have something to query
         if (!enabled) {
             movementLearner.recordMovement();
+            incrementalScanner.tick();
             return;
         }
         
@@ -81,54 +161,47 @@ public class AntiAFKManager {
             return;
         }
         
-        long currentTime = System.currentTimeMillis();
-        if (currentTime - lastUpdateTime < UPDATE_INTERVAL) {
+        subsystems.tick();
+    }
+    
+    private void updateBehaviour() {
+        // A clutch in progress owns the controls, scanning and automation carry on
+        if (emergencyManager.handleEmergency()) {
             return;
         }
-        lastUpdateTime = currentTime;
         
-        try {
-            // Handle emergencies first
-            if (emergencyManager.handleEmergency()) {
-                return; // Emergency action in progress
-            }
-            
-            // Get AI decision
-            AICore.AIDecision decision = aiCore.analyze();
-            
-            // Execute movement if needed
-            if (decision.targetPos != null) {
-                movementController.moveTowards(decision.targetPos);
-            } else if (decision.state == AICore.AIState.EXPLORING) {
-                // Use learned movement patterns 60% of the time
-                if (ThreadLocalRandom.current().nextFloat() < 0.6f && movementLearner.getPatternCount() > 0) {
-                    movementLearner.applyLearnedMovement(movementController);
-                } else {
-                    movementController.randomWalk();
-                }
-            } else if (!movementController.isMoving()) {
-                // Use learned patterns for idle movement occasionally
-                if (ThreadLocalRandom.current().nextFloat() < 0.3f && movementLearner.getPatternCount() > 0) {
-                    movementLearner.applyLearnedMovement(movementController);
-                } else {
-                    performIdleMovement();
-                }
+        // Get AI decision
+        AICore.AIDecision decision = aiCore.analyze();
+        
+        // Execute movement if needed
+        if (decision.hasTarget) {
+            movementController.moveTowards(decision.targetPos);
+        } else if (decision.state == AICore.AIState.IDLE && movementController.continuePath()) {
+            // Still walking the route to an earlier target
+        } else if (decision.state == AICore.AIState.EXPLORING) {
+            // Use learned movement patterns 60% of the time
+            if (ThreadLocalRandom.current().nextFloat() < 0.6f && movementLearner.getPatternCount() > 0) {
+                movementLearner.applyLearnedMovement(movementController);
+            } else {
+                movementController.randomWalk();
             }
-            
-            // Execute actions
-            actionExecutor.executeAction(decision);
-            
-            // Update automation systems
-            automationManager.update();
-            
-            // Random chat messages occasionally
-            if (config.enableRandomChat && ThreadLocalRandom.current().nextFloat() < config.chatFrequency) {
-                sendRandomChatMessage();
+        } else if (!movementController.isMoving()) {
+            // Use learned patterns for idle movement occasionally
+            if (ThreadLocalRandom.current().nextFloat() < 0.3f && movementLearner.getPatternCount() > 0) {
+                movementLearner.applyLearnedMovement(movementController);
+            } else {
+                performIdleMovement();
             }
-            
-        } catch (Exception e) {
-            // Silently handle errors to prevent crashes
-            e.printStackTrace();
+        }
+        
+        // Execute actions
+        actionExecutor.executeAction(decision);
+    }
+    
+    // chatFrequency is a per tick chance, checked once a second with the odds scaled to match
+    private void maybeSendRandomChat() {
+        if (config.enableRandomChat && ThreadLocalRandom.current().nextFloat() < config.chatFrequency * TICKS_PER_SECOND) {
+            sendRandomChatMessage();
         }
     }
     
@@ -142,27 +215,14 @@ public class AntiAFKManager {
                 float yawChange = (random.nextFloat() - 0.5f) * 2.0f;
                 float pitchChange = (random.nextFloat() - 0.5f) * 1.0f;
                 
-                client.player.setYaw(client.player.getYaw() + yawChange);
-                client.player.setPitch(Math.max(-90, Math.min(90, client.player.getPitch() + pitchChange)));
+                outbound.rotate(outbound.getYaw() + yawChange, outbound.getPitch() + pitchChange);
                 
                 // Occasional small step
                 if (random.nextFloat() < 0.3f) {
                     // Simulate movement input for 1.21.8
                     if (random.nextBoolean()) {
-                        client.player.setYaw(client.player.getYaw() + (random.nextFloat() - 0.5f) * 10);
+                        outbound.rotate(outbound.getYaw() + (random.nextFloat() - 0.5f) * 10, outbound.getPitch());
                     }
-                    
-                    // Stop movement after short time
-                    new Thread(() -> {
-                        try {
-                            Thread.sleep(100 + random.nextInt(200));
-                            if (client.player != null) {
-                                // Movement handled by AI
-                            }
-                        } catch (InterruptedException e) {
-                            Thread.currentThread().interrupt();
-                        }
-                    }).start();
                 }
             }
         }
@@ -179,14 +239,23 @@ public class AntiAFKManager {
     }
     
     private void stopAllActions() {
+        scheduler.cancelAll();
+        containerSessions.cancel();
+        outbound.cancelAll();
         movementController.stopMovement();
         automationManager.reset();
+        aiCore.invalidateDecision();
         
         if (client.player != null) {
             // Stop all movement - handled by movement controller
         }
     }
     
+    public void shutdown() {
+        movementLearner.stopLearning();
+        movementLearner.close();
+    }
+    
     public boolean isEnabled() {
         return enabled;
     }
@@ -220,6 +289,38 @@ public class AntiAFKManager {
         }
     }
     
+    public TickScheduler getScheduler() {
+        return scheduler;
+    }
+    
+    public SubsystemScheduler getSubsystems() {
+        return subsystems;
+    }
+    
+    public OutboundArbiter getOutbound() {
+        return outbound;
+    }
+    
+    public ContainerSessionEngine getContainerSessions() {
+        return containerSessions;
+    }
+    
+    public InventoryIndex getInventoryIndex() {
+        return inventoryIndex;
+    }
+    
+    public AICore getAICore() {
+        return aiCore;
+    }
+    
+    public NavGrid getNavGrid() {
+        return navGrid;
+    }
+    
+    public MovementController getMovementController() {
+        return movementController;
+    }
+    
     public MovementLearner getMovementLearner() {
         return movementLearner;
     }
@@ -228,5 +329,46 @@ public class AntiAFKManager {
         return basePerimeter;
     }
     
+    public EmergencyManager getEmergencyManager() {
+        return emergencyManager;
+    }
+    
+    public TargetSampler getTargetSampler() {
+        return targetSampler;
+    }
+    
+    public PoiRegistry getPoiRegistry() {
+        return poiRegistry;
+    }
+    
+    public SpatialQueryService getSpatialQueryService() {
+        return spatialQueryService;
+    }
+    
+    public IncrementalScanner getIncrementalScanner() {
+        return incrementalScanner;
+    }
+    
+    public void onBlockChanged(BlockPos pos, BlockState oldState, BlockState newState) {
+        poiRegistry.onBlockChanged(pos, oldState, newState);
+        aiCore.onBlockChanged(pos);
+        navGrid.onBlockChanged(pos);
+        hierarchicalPlanner.onBlockChanged(pos);
+        movementController.onBlockChanged(pos);
+    }
+    
+    public void onChunkLoad(ClientWorld world, WorldChunk chunk) {
+        poiRegistry.onChunkLoad(world, chunk);
+        navGrid.onChunkChanged(chunk.getPos().x, chunk.getPos().z);
+        hierarchicalPlanner.onChunkChanged(chunk.getPos().x, chunk.getPos().z);
+        incrementalScanner.markDirty();
+    }
+    
+    public void onChunkUnload(ClientWorld world, WorldChunk chunk) {
+        poiRegistry.onChunkUnload(world, chunk);
+        navGrid.onChunkChanged(chunk.getPos().x, chunk.getPos().z);
+        hierarchicalPlanner.onChunkChanged(chunk.getPos().x, chunk.getPos().z);
+    }
+    
 
 }
\ No newline at end of file
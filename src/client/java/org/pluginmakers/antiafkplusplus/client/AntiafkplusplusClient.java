@@ -1,6 +1,8 @@
 package org.pluginmakers.antiafkplusplus.client;
 
 import net.fabricmc.api.ClientModInitializer;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientChunkEvents;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientLifecycleEvents;
 import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
 import net.fabricmc.fabric.api.client.keybinding.v1.KeyBindingHelper;
 import net.fabricmc.fabric.api.client.command.v2.ClientCommandManager;
@@ -48,6 +50,13 @@ public class AntiafkplusplusClient implements ClientModInitializer {
                 }));
         });
         
+        // Keep world indexes in sync with chunk streaming
+        ClientChunkEvents.CHUNK_LOAD.register((world, chunk) -> AntiAFKManager.getInstance().onChunkLoad(world, chunk));
+        ClientChunkEvents.CHUNK_UNLOAD.register((world, chunk) -> AntiAFKManager.getInstance().onChunkUnload(world, chunk));
+        
+        // Learned movement is written in the background, give it a chance to finish
+        ClientLifecycleEvents.CLIENT_STOPPING.register(client -> AntiAFKManager.getInstance().shutdown());
+        
         // Register tick event
         ClientTickEvents.END_CLIENT_TICK.register(client -> {
             // Handle keybindings
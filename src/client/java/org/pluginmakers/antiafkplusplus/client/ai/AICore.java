@@ -3,174 +3,241 @@ package org.pluginmakers.antiafkplusplus.client.ai;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.mob.HostileEntity;
-import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.util.math.BlockPos;
-import net.minecraft.util.math.Vec3d;
+import net.minecraft.util.math.Direction;
 import net.minecraft.world.World;
-import net.minecraft.block.Block;
-import net.minecraft.block.Blocks;
-import net.minecraft.block.ChestBlock;
-import net.minecraft.block.FurnaceBlock;
+import org.pluginmakers.antiafkplusplus.client.config.AntiAFKConfig;
+import org.pluginmakers.antiafkplusplus.client.world.BlockClassifier;
+import org.pluginmakers.antiafkplusplus.client.world.PoiRegistry;
+import org.pluginmakers.antiafkplusplus.client.world.SpatialQueryService;
 
 import java.util.*;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
 
 public class AICore {
     private static final int SCAN_RADIUS = 16;
     private static final int DANGER_RADIUS = 12; // Extended combat range
+    private static final Direction[] DIRECTIONS = Direction.values();
     
     private final MinecraftClient client;
+    private final SpatialQueryService spatialQuery;
+    private final PerceptionSnapshot perception;
+    private final TargetSampler targetSampler;
     private final Random random = ThreadLocalRandom.current();
     private long lastActionTime = 0;
     
+    // Decision holders are reused every tick, callers must not keep them past the tick
+    private final AIDecision decision = new AIDecision();
+    private final AIDecision exploreDecision = new AIDecision();
+    private final AIDecision idleDecision = new AIDecision();
+    private final BlockPos.Mutable found = new BlockPos.Mutable();
+    private final BlockPos.Mutable adjacent = new BlockPos.Mutable();
+    
+    // Filters are created once so queries don't allocate a lambda per call
+    private final Predicate<BlockPos> configuredOre = pos -> client.world != null
+        && BlockClassifier.is(client.world.getBlockState(pos), BlockClassifier.ORE_CONFIGURED);
+    private final Predicate<BlockPos> visibleConfiguredOre = pos -> configuredOre.test(pos) && isOreVisible(client.world, pos);
+    private final Predicate<BlockPos> interactableChest = pos ->
+        org.pluginmakers.antiafkplusplus.client.AntiAFKManager.getInstance().getBasePerimeter().canInteractWithChest(pos);
+    
+    // Inputs the cached decision was derived from, it is reused until one of them changes
+    private boolean cacheValid = false;
+    private World cachedWorld;
+    private long cachedPos;
+    private long cachedHostiles;
+    private boolean cachedHostileInRange;
+    private boolean cachedShouldEat;
+    private int cachedIndexRevision;
+    private int cachedConfigRevision;
+    private long cachedAt;
+    private boolean blockUpdated = false;
+    
+    private long cacheHits = 0;
+    private long cacheMisses = 0;
+    private final long[] invalidations = new long[InvalidationReason.values().length];
+    
     public enum AIState {
         IDLE, EXPLORING, COMBAT, EATING, CHEST_INTERACTION, FURNACE_MANAGEMENT, MINING
     }
     
-    public AICore(MinecraftClient client) {
+    public enum InvalidationReason {
+        MOVED, BLOCK_UPDATE, INDEX_UPDATE, HOSTILES, THRESHOLD, CONFIG, TTL
+    }
+    
+    public AICore(MinecraftClient client, SpatialQueryService spatialQuery, PerceptionSnapshot perception,
+                  TargetSampler targetSampler) {
         this.client = client;
+        this.spatialQuery = spatialQuery;
+        this.perception = perception;
+        this.targetSampler = targetSampler;
     }
     
     public AIDecision analyze() {
-        if (client.player == null || client.world == null) {
-            return new AIDecision(AIState.IDLE, null, null);
+        if (client.player == null || client.world == null || !perception.valid) {
+            return idleDecision.set(AIState.IDLE, null);
         }
         
-        PlayerEntity player = client.player;
         World world = client.world;
+        BlockPos playerPos = client.player.getBlockPos();
         
-        HostileEntity nearbyHostile = findNearbyHostile(world, player.getPos());
-        if (nearbyHostile != null && nearbyHostile.distanceTo(player) < DANGER_RADIUS) {
-            return new AIDecision(AIState.COMBAT, null, nearbyHostile);
-        }
-        
-        if (shouldEat(player)) {
-            return new AIDecision(AIState.EATING, null, null);
-        }
-        
-        BlockPos furnacePos = findNearbyFurnace(world, player.getBlockPos());
-        if (furnacePos != null && shouldCheckFurnace()) {
-            return new AIDecision(AIState.FURNACE_MANAGEMENT, furnacePos, null);
-        }
-        
-        BlockPos orePos = findNearbyOre(world, player.getBlockPos());
-        if (orePos != null) {
-            return new AIDecision(AIState.MINING, orePos, null);
-        }
-        
-        BlockPos chestPos = findNearbyChest(world, player.getBlockPos());
-        if (chestPos != null && random.nextFloat() < 0.15f) { // Reduced chest interaction frequency
-            return new AIDecision(AIState.CHEST_INTERACTION, chestPos, null);
+        if (!isCacheUsable(world, playerPos)) {
+            decide(world, playerPos);
+            cacheDecision(world, playerPos);
         }
         
-        if (shouldMove()) {
-            BlockPos explorePos = generateExploreTarget(player.getBlockPos());
-            return new AIDecision(AIState.EXPLORING, explorePos, null);
+        // Exploring is time driven, so it is decided fresh on top of a cached idle decision
+        if (decision.state == AIState.IDLE && shouldMove()) {
+            exploreDecision.set(AIState.EXPLORING, null);
+            generateExploreTarget(playerPos, exploreDecision);
+            return exploreDecision;
         }
         
-        return new AIDecision(AIState.IDLE, null, null);
+        return decision;
     }
     
-    private HostileEntity findNearbyHostile(World world, Vec3d playerPos) {
-        return world.getEntitiesByClass(HostileEntity.class, 
-            net.minecraft.util.math.Box.of(playerPos, DANGER_RADIUS * 2, DANGER_RADIUS * 2, DANGER_RADIUS * 2),
-            entity -> entity.isAlive())
-            .stream()
-            .min(Comparator.comparingDouble(entity -> entity.distanceTo(client.player)))
-            .orElse(null);
+    // Marks the cached decision stale when a block inside its search range changes
+    public void onBlockChanged(BlockPos pos) {
+        if (!cacheValid || blockUpdated) return;
+        
+        if (Math.abs(pos.getX() - BlockPos.unpackLongX(cachedPos)) <= SCAN_RADIUS
+            && Math.abs(pos.getY() - BlockPos.unpackLongY(cachedPos)) <= 8
+            && Math.abs(pos.getZ() - BlockPos.unpackLongZ(cachedPos)) <= SCAN_RADIUS) {
+            blockUpdated = true;
+        }
     }
     
-    private boolean shouldEat(PlayerEntity player) {
-        return player.getHungerManager().getFoodLevel() < 16 || player.getHealth() < player.getMaxHealth() * 0.7f;
+    public void invalidateDecision() {
+        cacheValid = false;
     }
     
-    private BlockPos findNearbyFurnace(World world, BlockPos center) {
-        for (int x = -SCAN_RADIUS; x <= SCAN_RADIUS; x++) {
-            for (int y = -4; y <= 4; y++) {
-                for (int z = -SCAN_RADIUS; z <= SCAN_RADIUS; z++) {
-                    BlockPos pos = center.add(x, y, z);
-                    if (world.getBlockState(pos).getBlock() instanceof FurnaceBlock) {
-                        return pos;
-                    }
-                }
+    public String getStatsSummary() {
+        long total = cacheHits + cacheMisses;
+        StringBuilder builder = new StringBuilder("decisions: ")
+            .append(cacheHits).append(" cached, ").append(cacheMisses).append(" computed (")
+            .append(total == 0 ? 0 : cacheHits * 100 / total).append("% cached)");
+        for (InvalidationReason reason : InvalidationReason.values()) {
+            long count = invalidations[reason.ordinal()];
+            if (count > 0) {
+                builder.append(", ").append(reason.name().toLowerCase()).append(' ').append(count);
             }
         }
-        return null;
+        return builder.toString();
     }
     
-    private boolean shouldCheckFurnace() {
-        return random.nextFloat() < 0.4f;
-    }
-    
-    private BlockPos findNearbyOre(World world, BlockPos center) {
-        if (!org.pluginmakers.antiafkplusplus.client.config.AntiAFKConfig.getInstance().onlyVisibleOres) {
-            return findNearbyOreXray(world, center);
+    // True if none of the cached decision's inputs changed, records why otherwise
+    private boolean isCacheUsable(World world, BlockPos playerPos) {
+        long ttl = AntiAFKConfig.getInstance().decisionCacheTtlMs;
+        if (ttl <= 0 || !cacheValid || world != cachedWorld) {
+            cacheMisses++;
+            return false;
         }
         
-        // Only find visible ores (exposed to air)
-        List<Block> ores = getConfiguredOres();
+        InvalidationReason reason = null;
+        if (playerPos.asLong() != cachedPos) {
+            reason = InvalidationReason.MOVED;
+        } else if (blockUpdated) {
+            reason = InvalidationReason.BLOCK_UPDATE;
+        } else if (spatialQuery.getIndexRevision() != cachedIndexRevision) {
+            reason = InvalidationReason.INDEX_UPDATE;
+        } else if (perception.getHostileSignature() != cachedHostiles || isHostileInRange() != cachedHostileInRange) {
+            reason = InvalidationReason.HOSTILES;
+        } else if (shouldEat() != cachedShouldEat) {
+            reason = InvalidationReason.THRESHOLD;
+        } else if (AntiAFKConfig.getInstance().getRevision() != cachedConfigRevision) {
+            reason = InvalidationReason.CONFIG;
+        } else if (System.currentTimeMillis() - cachedAt >= ttl) {
+            reason = InvalidationReason.TTL;
+        }
         
-        for (int x = -SCAN_RADIUS; x <= SCAN_RADIUS; x++) {
-            for (int y = -8; y <= 8; y++) {
-                for (int z = -SCAN_RADIUS; z <= SCAN_RADIUS; z++) {
-                    BlockPos pos = center.add(x, y, z);
-                    Block block = world.getBlockState(pos).getBlock();
-                    
-                    if (ores.contains(block) && isOreVisible(world, pos)) {
-                        return pos;
-                    }
-                }
-            }
+        if (reason != null) {
+            invalidations[reason.ordinal()]++;
+            cacheMisses++;
+            return false;
         }
-        return null;
+        cacheHits++;
+        return true;
     }
     
-    private BlockPos findNearbyOreXray(World world, BlockPos center) {
-        List<Block> ores = getConfiguredOres();
-        
-        for (int x = -SCAN_RADIUS; x <= SCAN_RADIUS; x++) {
-            for (int y = -8; y <= 8; y++) {
-                for (int z = -SCAN_RADIUS; z <= SCAN_RADIUS; z++) {
-                    BlockPos pos = center.add(x, y, z);
-                    if (ores.contains(world.getBlockState(pos).getBlock())) {
-                        return pos;
-                    }
-                }
-            }
-        }
-        return null;
+    private void cacheDecision(World world, BlockPos playerPos) {
+        cacheValid = true;
+        cachedWorld = world;
+        cachedPos = playerPos.asLong();
+        cachedHostiles = perception.getHostileSignature();
+        cachedHostileInRange = isHostileInRange();
+        cachedShouldEat = shouldEat();
+        cachedIndexRevision = spatialQuery.getIndexRevision();
+        cachedConfigRevision = AntiAFKConfig.getInstance().getRevision();
+        cachedAt = System.currentTimeMillis();
+        blockUpdated = false;
     }
     
-    private List<Block> getConfiguredOres() {
-        var config = org.pluginmakers.antiafkplusplus.client.config.AntiAFKConfig.getInstance();
-        List<Block> ores = new ArrayList<>();
-        
-        if (config.mineCoal) {
-            ores.addAll(Arrays.asList(Blocks.COAL_ORE, Blocks.DEEPSLATE_COAL_ORE));
+    private boolean isHostileInRange() {
+        return perception.nearestHostile() != null && perception.nearestHostileDistanceSq() < DANGER_RADIUS * DANGER_RADIUS;
+    }
+    
+    // Writes the decision for the current inputs into the reused holder
+    private void decide(World world, BlockPos playerPos) {
+        HostileEntity nearbyHostile = perception.nearestHostile();
+        if (isHostileInRange()) {
+            decision.set(AIState.COMBAT, nearbyHostile);
+            return;
         }
-        if (config.mineIron) {
-            ores.addAll(Arrays.asList(Blocks.IRON_ORE, Blocks.DEEPSLATE_IRON_ORE));
+        
+        if (shouldEat()) {
+            decision.set(AIState.EATING, null);
+            return;
         }
-        if (config.mineGold) {
-            ores.addAll(Arrays.asList(Blocks.GOLD_ORE, Blocks.DEEPSLATE_GOLD_ORE));
+        
+        if (findNearbyFurnace(world, playerPos) && shouldCheckFurnace()) {
+            decision.set(AIState.FURNACE_MANAGEMENT, null).setTarget(found);
+            return;
         }
-        if (config.mineDiamond) {
-            ores.addAll(Arrays.asList(Blocks.DIAMOND_ORE, Blocks.DEEPSLATE_DIAMOND_ORE));
+        
+        if (findNearbyOre(world, playerPos)) {
+            decision.set(AIState.MINING, null).setTarget(found);
+            return;
         }
-        if (config.mineEmerald) {
-            ores.addAll(Arrays.asList(Blocks.EMERALD_ORE, Blocks.DEEPSLATE_EMERALD_ORE));
+        
+        if (findNearbyChest(world, playerPos) && random.nextFloat() < 0.15f) { // Reduced chest interaction frequency
+            decision.set(AIState.CHEST_INTERACTION, null).setTarget(found);
+            return;
         }
-        if (config.mineRedstone) {
-            ores.addAll(Arrays.asList(Blocks.REDSTONE_ORE, Blocks.DEEPSLATE_REDSTONE_ORE));
+        
+        decision.set(AIState.IDLE, null);
+    }
+    
+    private boolean shouldEat() {
+        return perception.foodLevel < 16 || perception.health < perception.maxHealth * 0.7f;
+    }
+    
+    private boolean findNearbyFurnace(World world, BlockPos center) {
+        return spatialQuery.findNearest(SpatialQueryService.Caller.AI_FURNACE, PoiRegistry.PoiType.FURNACE, center, SCAN_RADIUS, 4, null, found);
+    }
+    
+    private boolean shouldCheckFurnace() {
+        return random.nextFloat() < 0.4f;
+    }
+    
+    private boolean findNearbyOre(World world, BlockPos center) {
+        if (!AntiAFKConfig.getInstance().onlyVisibleOres) {
+            return findNearbyOreXray(world, center);
         }
         
-        return ores;
+        // Only find visible ores (exposed to air)
+        return spatialQuery.findNearest(SpatialQueryService.Caller.AI_ORE, PoiRegistry.PoiType.ORE, center, SCAN_RADIUS, 8,
+            visibleConfiguredOre, found);
+    }
+    
+    private boolean findNearbyOreXray(World world, BlockPos center) {
+        return spatialQuery.findNearest(SpatialQueryService.Caller.AI_ORE, PoiRegistry.PoiType.ORE, center, SCAN_RADIUS, 8,
+            configuredOre, found);
     }
     
     private boolean isOreVisible(World world, BlockPos orePos) {
         // Check if ore has at least one air block adjacent (visible)
-        for (net.minecraft.util.math.Direction direction : net.minecraft.util.math.Direction.values()) {
-            BlockPos adjacent = orePos.offset(direction);
+        for (Direction direction : DIRECTIONS) {
+            adjacent.set(orePos, direction);
             if (world.getBlockState(adjacent).isAir()) {
                 return true;
             }
@@ -178,21 +245,9 @@ public class AICore {
         return false;
     }
     
-    private BlockPos findNearbyChest(World world, BlockPos center) {
-        var basePerimeter = org.pluginmakers.antiafkplusplus.client.AntiAFKManager.getInstance().getBasePerimeter();
-        
-        for (int x = -SCAN_RADIUS; x <= SCAN_RADIUS; x++) {
-            for (int y = -4; y <= 4; y++) {
-                for (int z = -SCAN_RADIUS; z <= SCAN_RADIUS; z++) {
-                    BlockPos pos = center.add(x, y, z);
-                    if (world.getBlockState(pos).getBlock() instanceof ChestBlock && 
-                        basePerimeter.canInteractWithChest(pos)) {
-                        return pos;
-                    }
-                }
-            }
-        }
-        return null;
+    private boolean findNearbyChest(World world, BlockPos center) {
+        return spatialQuery.findNearest(SpatialQueryService.Caller.AI_CHEST, PoiRegistry.PoiType.CHEST, center, SCAN_RADIUS, 4,
+            interactableChest, found);
     }
     
     private boolean shouldMove() {
@@ -204,23 +259,35 @@ public class AICore {
         return false;
     }
     
-    private BlockPos generateExploreTarget(BlockPos center) {
-        int range = 8 + random.nextInt(16);
-        int x = center.getX() + (random.nextInt(range * 2) - range);
-        int z = center.getZ() + (random.nextInt(range * 2) - range);
-        int y = center.getY() + (random.nextInt(6) - 3);
-        return new BlockPos(x, y, z);
+    // Leaves the decision without a target when no standable spot turns up, the caller then wanders
+    private void generateExploreTarget(BlockPos center, AIDecision out) {
+        int filters = TargetSampler.AVOID_HAZARDS;
+        if (AntiAFKConfig.getInstance().exploreInsideBase) {
+            filters |= TargetSampler.INSIDE_BASE;
+        }
+        if (targetSampler.sample(center, 8, 24, filters, found)) {
+            out.setTarget(found);
+        }
     }
     
+    // Mutable so AICore can hand out the same instances every tick
     public static class AIDecision {
-        public final AIState state;
-        public final BlockPos targetPos;
-        public final Entity targetEntity;
+        public AIState state = AIState.IDLE;
+        public final BlockPos.Mutable targetPos = new BlockPos.Mutable();
+        public boolean hasTarget = false;
+        public Entity targetEntity;
         
-        public AIDecision(AIState state, BlockPos targetPos, Entity targetEntity) {
+        AIDecision set(AIState state, Entity targetEntity) {
             this.state = state;
-            this.targetPos = targetPos;
             this.targetEntity = targetEntity;
+            this.hasTarget = false;
+            return this;
+        }
+        
+        AIDecision setTarget(BlockPos pos) {
+            targetPos.set(pos);
+            hasTarget = true;
+            return this;
         }
     }
 }
\ No newline at end of file
@@ -3,28 +3,49 @@ package org.pluginmakers.antiafkplusplus.client.ai;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.network.ClientPlayerEntity;
 import net.minecraft.entity.Entity;
-import net.minecraft.entity.mob.HostileEntity;
 import net.minecraft.item.ItemStack;
-import net.minecraft.component.type.FoodComponent;
+import net.minecraft.registry.tag.ItemTags;
+import net.minecraft.screen.GenericContainerScreenHandler;
+import net.minecraft.screen.ScreenHandler;
 import net.minecraft.screen.slot.SlotActionType;
 import net.minecraft.util.ActionResult;
-import net.minecraft.util.Hand;
 import net.minecraft.util.hit.BlockHitResult;
-import net.minecraft.util.hit.EntityHitResult;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.Direction;
 import net.minecraft.util.math.Vec3d;
 import net.minecraft.world.RaycastContext;
+import org.pluginmakers.antiafkplusplus.client.automation.AutomationManager;
+import org.pluginmakers.antiafkplusplus.client.automation.ContainerSessionEngine;
+import org.pluginmakers.antiafkplusplus.client.inventory.InventoryIndex;
+import org.pluginmakers.antiafkplusplus.client.network.OutboundArbiter;
+import org.pluginmakers.antiafkplusplus.client.scheduler.TickScheduler;
 
 import java.util.concurrent.ThreadLocalRandom;
 
 public class ActionExecutor {
     private final MinecraftClient client;
+    private final PerceptionSnapshot perception;
+    private final TickScheduler scheduler;
+    private final ContainerSessionEngine containerSessions;
+    private final AutomationManager automationManager;
+    private final InventoryIndex inventory;
+    private final OutboundArbiter outbound;
     private long lastActionTime = 0;
     private static final int ACTION_COOLDOWN = 2000; // More natural timing
     
-    public ActionExecutor(MinecraftClient client) {
+    private static final double COMBAT_RANGE_SQ = 8.0 * 8.0;
+    private static final double DODGE_RANGE_SQ = 3.0 * 3.0;
+    
+    public ActionExecutor(MinecraftClient client, PerceptionSnapshot perception, TickScheduler scheduler,
+                          ContainerSessionEngine containerSessions, AutomationManager automationManager,
+                          InventoryIndex inventory, OutboundArbiter outbound) {
         this.client = client;
+        this.perception = perception;
+        this.scheduler = scheduler;
+        this.containerSessions = containerSessions;
+        this.automationManager = automationManager;
+        this.inventory = inventory;
+        this.outbound = outbound;
     }
     
     public void executeAction(AICore.AIDecision decision) {
@@ -33,9 +54,10 @@ public class ActionExecutor {
         switch (decision.state) {
             case COMBAT -> executeCombat(decision.targetEntity);
             case EATING -> executeEating();
-            case CHEST_INTERACTION -> executeChestInteraction(decision.targetPos);
-            case FURNACE_MANAGEMENT -> executeFurnaceManagement(decision.targetPos);
-            case MINING -> executeMining(decision.targetPos);
+            // The decision's position is reused next tick, packets and the interaction manager keep theirs
+            case CHEST_INTERACTION -> executeChestInteraction(decision.targetPos.toImmutable());
+            case FURNACE_MANAGEMENT -> executeFurnaceManagement(decision.targetPos.toImmutable());
+            case MINING -> executeMining(decision.targetPos.toImmutable());
         }
         
         lastActionTime = System.currentTimeMillis();
@@ -48,26 +70,12 @@ public class ActionExecutor {
     private void executeCombat(Entity target) {
         if (client.player == null) return;
         
-        // Kill-aura: Find all hostile entities in range
-        java.util.List<Entity> hostileEntities = client.world.getOtherEntities(client.player, 
-            client.player.getBoundingBox().expand(8.0), // Extended range
-            entity -> entity instanceof HostileEntity && entity.isAlive());
-        
-        if (hostileEntities.isEmpty()) return;
-        
-        // Attack closest hostile
-        Entity closestHostile = hostileEntities.stream()
-            .min((e1, e2) -> Double.compare(
-                client.player.distanceTo(e1), 
-                client.player.distanceTo(e2)))
-            .orElse(null);
-        
+        // Kill-aura: closest hostile from this tick's perception snapshot
+        Entity closestHostile = perception.nearestHostile();
         if (closestHostile == null) return;
         
-        ClientPlayerEntity player = client.player;
-        double distance = player.distanceTo(closestHostile);
-        
-        if (distance > 8.0) return;
+        double distanceSq = perception.nearestHostileDistanceSq();
+        if (distanceSq > COMBAT_RANGE_SQ) return;
         
         // Look at the target
         lookAtEntity(closestHostile);
@@ -81,7 +89,7 @@ public class ActionExecutor {
         }
         
         // Defensive movement
-        if (distance < 3.0 && ThreadLocalRandom.current().nextFloat() < 0.5f) {
+        if (distanceSq < DODGE_RANGE_SQ && ThreadLocalRandom.current().nextFloat() < 0.5f) {
             performDodgeMovement();
         }
     }
@@ -89,79 +97,43 @@ public class ActionExecutor {
     private void executeEating() {
         if (client.player == null) return;
         
-        ItemStack foodItem = findFoodInInventory();
-        if (foodItem.isEmpty()) return;
-        
-        // Switch to food item
-        int foodSlot = findItemSlot(foodItem);
-        if (foodSlot != -1 && foodSlot < 9) {
-            if (foodSlot < 9) {
-                try {
-                    java.lang.reflect.Field field = client.player.getInventory().getClass().getDeclaredField("selectedSlot");
-                    field.setAccessible(true);
-                    field.setInt(client.player.getInventory(), foodSlot);
-                } catch (Exception e) {}
-            }
-            
-            // Start eating
-            client.interactionManager.interactItem(client.player, Hand.MAIN_HAND);
-        }
+        // Switch to the most filling food on the hotbar
+        inventory.refresh();
+        int foodSlot = inventory.getBestFoodSlot();
+        if (foodSlot == -1) return;
+        
+        outbound.selectHotbarSlot(foodSlot);
+        
+        // Start eating
+        outbound.interactItem();
     }
     
     private void executeChestInteraction(BlockPos chestPos) {
         if (client.player == null || client.world == null) return;
         
-        double distance = client.player.getPos().distanceTo(Vec3d.ofCenter(chestPos));
-        if (distance > 4.0) return;
+        if (squaredDistanceToCenter(chestPos) > 4.0 * 4.0) return;
         
         // Look at chest
         lookAtBlock(chestPos);
         
-        // Right-click to open
-        BlockHitResult hitResult = new BlockHitResult(
-            Vec3d.ofCenter(chestPos), 
-            Direction.UP, 
-            chestPos, 
-            false
-        );
-        
-        client.interactionManager.interactBlock(
-            client.player, 
-            Hand.MAIN_HAND, 
-            hitResult
-        );
-        
-        // Enhanced chest interaction with item management
-        scheduleEnhancedChestBrowsing();
+        // Open it and manage items once its contents have synced
+        containerSessions.begin(chestPos, this::planChestBrowsing);
     }
     
     private void executeFurnaceManagement(BlockPos furnacePos) {
         if (client.player == null) return;
         
-        double distance = client.player.getPos().distanceTo(Vec3d.ofCenter(furnacePos));
-        if (distance > 4.0) return;
+        if (squaredDistanceToCenter(furnacePos) > 4.0 * 4.0) return;
         
         lookAtBlock(furnacePos);
         
-        BlockHitResult hitResult = new BlockHitResult(
-            Vec3d.ofCenter(furnacePos), 
-            Direction.UP, 
-            furnacePos, 
-            false
-        );
-        
-        client.interactionManager.interactBlock(
-            client.player, 
-            Hand.MAIN_HAND, 
-            hitResult
-        );
+        automationManager.visitFurnace(furnacePos);
     }
     
     private void executeMining(BlockPos orePos) {
         if (client.player == null || client.interactionManager == null) return;
         
-        double distance = client.player.getPos().distanceTo(Vec3d.ofCenter(orePos));
-        if (distance > 5.0) return;
+        if (squaredDistanceToCenter(orePos) > 5.0 * 5.0) return;
         
         // Select best tool
         selectBestTool(orePos);
@@ -170,135 +142,60 @@ public class ActionExecutor {
         lookAtBlock(orePos);
         
         // Start mining
-        BlockHitResult hitResult = new BlockHitResult(
-            Vec3d.ofCenter(orePos), 
-            Direction.UP, 
-            orePos, 
-            false
-        );
-        
-        client.interactionManager.attackBlock(orePos, Direction.UP);
+        outbound.attackBlock(orePos, Direction.UP);
     }
     
     private void lookAtEntity(Entity entity) {
-        if (client.player == null) return;
-        
-        Vec3d playerEyes = client.player.getEyePos();
-        Vec3d targetPos = entity.getPos().add(0, entity.getHeight() * 0.5, 0);
-        Vec3d direction = targetPos.subtract(playerEyes).normalize();
-        
-        float yaw = (float) (Math.atan2(direction.x, direction.z) * 180.0 / Math.PI);
-        float pitch = (float) (Math.asin(-direction.y) * 180.0 / Math.PI);
-        
-        client.player.setYaw(yaw);
-        client.player.setPitch(pitch);
+        lookAt(entity.getX(), entity.getY() + entity.getHeight() * 0.5, entity.getZ());
     }
     
     private void lookAtBlock(BlockPos pos) {
-        if (client.player == null) return;
-        
-        Vec3d playerEyes = client.player.getEyePos();
-        Vec3d targetPos = Vec3d.ofCenter(pos);
-        Vec3d direction = targetPos.subtract(playerEyes).normalize();
-        
-        float yaw = (float) (Math.atan2(direction.x, direction.z) * 180.0 / Math.PI);
-        float pitch = (float) (Math.asin(-direction.y) * 180.0 / Math.PI);
-        
-        client.player.setYaw(yaw);
-        client.player.setPitch(pitch);
+        lookAt(pos.getX() + 0.5, pos.getY() + 0.5, pos.getZ() + 0.5);
     }
     
-    private void selectBestWeapon() {
+    private void lookAt(double targetX, double targetY, double targetZ) {
         if (client.player == null) return;
         
-        int bestSlot = -1;
-        float bestDamage = 0;
+        double dx = targetX - client.player.getX();
+        double dy = targetY - client.player.getEyeY();
+        double dz = targetZ - client.player.getZ();
+        double length = Math.sqrt(dx * dx + dy * dy + dz * dz);
+        if (length < 1.0E-4) return;
         
-        for (int i = 0; i < 9; i++) {
-            ItemStack stack = client.player.getInventory().getStack(i);
-            if (!stack.isEmpty()) {
-                // Simplified weapon detection
-                String itemName = stack.getItem().toString().toLowerCase();
-                if (itemName.contains("sword") || itemName.contains("axe")) {
-                    float damage = getItemDamage(stack);
-                    if (damage > bestDamage) {
-                        bestDamage = damage;
-                        bestSlot = i;
-                    }
-                }
-            }
-        }
+        float yaw = (float) (Math.atan2(dx / length, dz / length) * 180.0 / Math.PI);
+        float pitch = (float) (Math.asin(-dy / length) * 180.0 / Math.PI);
         
-        if (bestSlot != -1 && bestSlot < 9) {
-            try {
-                java.lang.reflect.Field field = client.player.getInventory().getClass().getDeclaredField("selectedSlot");
-                field.setAccessible(true);
-                field.setInt(client.player.getInventory(), bestSlot);
-            } catch (Exception e) {}
-        }
+        outbound.rotate(yaw, pitch);
     }
     
-    private void selectBestTool(BlockPos pos) {
-        if (client.player == null || client.world == null) return;
-        
-        String blockName = client.world.getBlockState(pos).getBlock().toString().toLowerCase();
-        
-        int bestSlot = -1;
-        for (int i = 0; i < 9; i++) {
-            ItemStack stack = client.player.getInventory().getStack(i);
-            if (!stack.isEmpty()) {
-                String itemName = stack.getItem().toString().toLowerCase();
-                
-                if ((blockName.contains("ore") || blockName.contains("stone")) && itemName.contains("pickaxe")) {
-                    bestSlot = i;
-                    break;
-                } else if (blockName.contains("wood") && itemName.contains("axe")) {
-                    bestSlot = i;
-                    break;
-                } else if (blockName.contains("dirt") && itemName.contains("shovel")) {
-                    bestSlot = i;
-                    break;
-                }
-            }
-        }
-        
-        if (bestSlot != -1 && bestSlot < 9) {
-            try {
-                java.lang.reflect.Field field = client.player.getInventory().getClass().getDeclaredField("selectedSlot");
-                field.setAccessible(true);
-                field.setInt(client.player.getInventory(), bestSlot);
-            } catch (Exception e) {}
-        }
+    private double squaredDistanceToCenter(BlockPos pos) {
+        return client.player.squaredDistanceTo(pos.getX() + 0.5, pos.getY() + 0.5, pos.getZ() + 0.5);
     }
     
-    private ItemStack findFoodInInventory() {
-        if (client.player == null) return ItemStack.EMPTY;
+    private void selectBestWeapon() {
+        if (client.player == null) return;
         
-        for (int i = 0; i < client.player.getInventory().size(); i++) {
-            ItemStack stack = client.player.getInventory().getStack(i);
-            if (!stack.isEmpty() && stack.getItem().getComponents().contains(net.minecraft.component.DataComponentTypes.FOOD)) {
-                return stack;
-            }
+        inventory.refresh();
+        int bestSlot = inventory.getBestWeaponSlot();
+        if (bestSlot != -1) {
+            outbound.selectHotbarSlot(bestSlot);
         }
-        return ItemStack.EMPTY;
     }
     
-    private int findItemSlot(ItemStack item) {
-        if (client.player == null) return -1;
+    private void selectBestTool(BlockPos pos) {
+        if (client.player == null || client.world == null) return;
         
-        for (int i = 0; i < client.player.getInventory().size(); i++) {
-            if (ItemStack.areItemsEqual(client.player.getInventory().getStack(i), item)) {
-                return i;
-            }
+        inventory.refresh();
+        int bestSlot = inventory.getBestToolSlot(client.world.getBlockState(pos));
+        if (bestSlot != -1) {
+            outbound.selectHotbarSlot(bestSlot);
         }
-        return -1;
     }
     
     private void attackEntity(Entity target) {
         if (client.interactionManager == null) return;
         
-        EntityHitResult hitResult = new EntityHitResult(target);
-        client.interactionManager.attackEntity(client.player, target);
+        outbound.attackEntity(target);
     }
     
     private void performDodgeMovement() {
@@ -307,195 +204,118 @@ public class ActionExecutor {
         ThreadLocalRandom random = ThreadLocalRandom.current();
         float dodgeDirection = random.nextFloat() * 360;
         
-        Vec3d dodgeVelocity = new Vec3d(
+        client.player.setVelocity(
             Math.cos(Math.toRadians(dodgeDirection)) * 0.3,
             0,
             Math.sin(Math.toRadians(dodgeDirection)) * 0.3
         );
-        client.player.setVelocity(dodgeVelocity);
         
         // Schedule to stop dodge movement
-        new Thread(() -> {
-            try {
-                Thread.sleep(200 + random.nextInt(300));
-                if (client.player != null) {
-                    client.player.setVelocity(Vec3d.ZERO);
-                }
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
+        scheduler.schedule(200 + random.nextInt(300), () -> {
+            if (client.player != null) {
+                client.player.setVelocity(Vec3d.ZERO);
             }
-        }).start();
+        });
     }
     
-    private void scheduleEnhancedChestBrowsing() {
-        new Thread(() -> {
-            try {
-                Thread.sleep(1500 + ThreadLocalRandom.current().nextInt(2500));
-                
-                if (client.currentScreen != null && client.player != null) {
-                    // Take armor if player has none equipped
-                    takeArmorFromChest();
-                    
-                    // Take tools and weapons if inventory lacks them
-                    takeToolsFromChest();
-                    
-                    // Take smelting materials
-                    takeSmeltingMaterials();
-                    
-                    // Organize inventory
-                    organizeInventory();
-                    
-                    Thread.sleep(500 + ThreadLocalRandom.current().nextInt(1000));
-                    client.player.closeHandledScreen();
-                }
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
-        }).start();
+    // Container slots first, then the player's main inventory (27) and hotbar (9)
+    private void planChestBrowsing(ScreenHandler handler, ContainerSessionEngine.ClickPlan plan) {
+        if (!(handler instanceof GenericContainerScreenHandler container) || client.player == null) return;
+        
+        int containerSize = container.getRows() * 9;
+        inventory.refresh();
+        boolean[] clicked = new boolean[containerSize];
+        
+        // Take armor if player has none equipped
+        planTakeArmor(handler, containerSize, clicked, plan);
+        
+        // Take tools and weapons if inventory lacks them
+        planTakeTools(handler, containerSize, clicked, plan);
+        
+        // Take smelting materials
+        planTakeSmeltingMaterials(handler, containerSize, clicked, plan);
+        
+        // Organize inventory
+        planOrganizeInventory(containerSize, plan);
     }
     
-    private void takeArmorFromChest() {
-        if (client.currentScreen == null || client.player == null) return;
-        
+    private void planTakeArmor(ScreenHandler handler, int containerSize, boolean[] clicked, ContainerSessionEngine.ClickPlan plan) {
         // Check if player has armor equipped (slots 36-39 are armor slots)
-        boolean needsHelmet = client.player.getInventory().getStack(39).isEmpty(); // Helmet
-        boolean needsChestplate = client.player.getInventory().getStack(38).isEmpty(); // Chestplate
-        boolean needsLeggings = client.player.getInventory().getStack(37).isEmpty(); // Leggings
-        boolean needsBoots = client.player.getInventory().getStack(36).isEmpty(); // Boots
+        boolean needsHelmet = inventory.isSlotEmpty(39); // Helmet
+        boolean needsChestplate = inventory.isSlotEmpty(38); // Chestplate
+        boolean needsLeggings = inventory.isSlotEmpty(37); // Leggings
+        boolean needsBoots = inventory.isSlotEmpty(36); // Boots
         
         if (!needsHelmet && !needsChestplate && !needsLeggings && !needsBoots) return;
         
         // Search chest for armor and take it
-        for (int i = 0; i < 27; i++) { // Chest slots
-            try {
-                ItemStack stack = client.player.currentScreenHandler.getSlot(i).getStack();
-                if (!stack.isEmpty()) {
-                    String itemName = stack.getItem().toString().toLowerCase();
-                    
-                    if ((needsHelmet && itemName.contains("helmet")) ||
-                        (needsChestplate && itemName.contains("chestplate")) ||
-                        (needsLeggings && itemName.contains("leggings")) ||
-                        (needsBoots && itemName.contains("boots"))) {
-                        
-                        client.interactionManager.clickSlot(
-                            client.player.currentScreenHandler.syncId,
-                            i, 0, SlotActionType.QUICK_MOVE, client.player
-                        );
-                        Thread.sleep(200);
-                    }
-                }
-            } catch (Exception e) {}
-        }
-    }
-    
-    private void takeToolsFromChest() {
-        if (client.currentScreen == null || client.player == null) return;
-        
-        boolean hasPickaxe = hasToolInInventory("pickaxe");
-        boolean hasSword = hasToolInInventory("sword");
-        boolean hasAxe = hasToolInInventory("axe");
-        
-        for (int i = 0; i < 27; i++) {
-            try {
-                ItemStack stack = client.player.currentScreenHandler.getSlot(i).getStack();
-                if (!stack.isEmpty()) {
-                    String itemName = stack.getItem().toString().toLowerCase();
+        for (int i = 0; i < containerSize; i++) {
+            ItemStack stack = handler.getSlot(i).getStack();
+            if (!clicked[i] && !stack.isEmpty()) {
+                String itemName = stack.getItem().toString().toLowerCase();
+                
+                if ((needsHelmet && itemName.contains("helmet")) ||
+                    (needsChestplate && itemName.contains("chestplate")) ||
+                    (needsLeggings && itemName.contains("leggings")) ||
+                    (needsBoots && itemName.contains("boots"))) {
                     
-                    if ((!hasPickaxe && itemName.contains("pickaxe")) ||
-                        (!hasSword && itemName.contains("sword")) ||
-                        (!hasAxe && itemName.contains("axe"))) {
-                        
-                        client.interactionManager.clickSlot(
-                            client.player.currentScreenHandler.syncId,
-                            i, 0, SlotActionType.QUICK_MOVE, client.player
-                        );
-                        Thread.sleep(200);
-                        
-                        if (itemName.contains("pickaxe")) hasPickaxe = true;
-                        if (itemName.contains("sword")) hasSword = true;
-                        if (itemName.contains("axe")) hasAxe = true;
-                    }
+                    plan.add(i, 0, SlotActionType.QUICK_MOVE);
+                    clicked[i] = true;
                 }
-            } catch (Exception e) {}
+            }
         }
     }
     
-    private void takeSmeltingMaterials() {
-        if (client.currentScreen == null || client.player == null) return;
-        
-        for (int i = 0; i < 27; i++) {
-            try {
-                ItemStack stack = client.player.currentScreenHandler.getSlot(i).getStack();
-                if (!stack.isEmpty()) {
-                    String itemName = stack.getItem().toString().toLowerCase();
+    private void planTakeTools(ScreenHandler handler, int containerSize, boolean[] clicked, ContainerSessionEngine.ClickPlan plan) {
+        boolean hasPickaxe = inventory.has(InventoryIndex.PICKAXE);
+        boolean hasSword = inventory.has(InventoryIndex.SWORD);
+        boolean hasAxe = inventory.has(InventoryIndex.AXE);
+        
+        for (int i = 0; i < containerSize; i++) {
+            ItemStack stack = handler.getSlot(i).getStack();
+            if (!clicked[i] && !stack.isEmpty()) {
+                boolean pickaxe = stack.isIn(ItemTags.PICKAXES);
+                boolean sword = stack.isIn(ItemTags.SWORDS);
+                boolean axe = stack.isIn(ItemTags.AXES);
+                
+                if ((!hasPickaxe && pickaxe) || (!hasSword && sword) || (!hasAxe && axe)) {
+                    plan.add(i, 0, SlotActionType.QUICK_MOVE);
+                    clicked[i] = true;
                     
-                    if (itemName.contains("ore") || itemName.contains("raw_") || 
-                        itemName.contains("coal") || itemName.contains("charcoal")) {
-                        
-                        client.interactionManager.clickSlot(
-                            client.player.currentScreenHandler.syncId,
-                            i, 0, SlotActionType.QUICK_MOVE, client.player
-                        );
-                        Thread.sleep(150);
-                    }
+                    hasPickaxe |= pickaxe;
+                    hasSword |= sword;
+                    hasAxe |= axe;
                 }
-            } catch (Exception e) {}
+            }
         }
     }
     
-    private void organizeInventory() {
-        if (client.player == null) return;
-        
-        // Simple organization: move tools to hotbar
-        for (int i = 9; i < 36; i++) {
-            ItemStack stack = client.player.getInventory().getStack(i);
-            if (!stack.isEmpty()) {
+    private void planTakeSmeltingMaterials(ScreenHandler handler, int containerSize, boolean[] clicked, ContainerSessionEngine.ClickPlan plan) {
+        for (int i = 0; i < containerSize; i++) {
+            ItemStack stack = handler.getSlot(i).getStack();
+            if (!clicked[i] && !stack.isEmpty()) {
                 String itemName = stack.getItem().toString().toLowerCase();
                 
-                if (itemName.contains("sword") || itemName.contains("pickaxe") || 
-                    itemName.contains("axe") || itemName.contains("shovel")) {
+                if (itemName.contains("ore") || itemName.contains("raw_") || 
+                    itemName.contains("coal") || itemName.contains("charcoal")) {
                     
-                    // Find empty hotbar slot
-                    for (int hotbarSlot = 0; hotbarSlot < 9; hotbarSlot++) {
-                        if (client.player.getInventory().getStack(hotbarSlot).isEmpty()) {
-                            try {
-                                client.interactionManager.clickSlot(
-                                    client.player.currentScreenHandler.syncId,
-                                    i, 0, SlotActionType.PICKUP, client.player
-                                );
-                                client.interactionManager.clickSlot(
-                                    client.player.currentScreenHandler.syncId,
-                                    hotbarSlot + 36, 0, SlotActionType.PICKUP, client.player
-                                );
-                                Thread.sleep(100);
-                                break;
-                            } catch (Exception e) {}
-                        }
-                    }
+                    plan.add(i, 0, SlotActionType.QUICK_MOVE);
+                    clicked[i] = true;
                 }
             }
         }
     }
     
-    private boolean hasToolInInventory(String toolType) {
-        if (client.player == null) return false;
-        
-        for (int i = 0; i < client.player.getInventory().size(); i++) {
-            ItemStack stack = client.player.getInventory().getStack(i);
-            if (!stack.isEmpty() && stack.getItem().toString().toLowerCase().contains(toolType)) {
-                return true;
-            }
+    private void planOrganizeInventory(int containerSize, ContainerSessionEngine.ClickPlan plan) {
+        // Simple organization: move tools to empty hotbar slots
+        int freeHotbar = inventory.getFreeHotbarMask();
+        for (int i = InventoryIndex.HOTBAR_SIZE; i < InventoryIndex.MAIN_SIZE && freeHotbar != 0; i++) {
+            if ((inventory.getFlags(i) & InventoryIndex.TOOL) == 0) continue;
+            
+            int hotbarSlot = Integer.numberOfTrailingZeros(freeHotbar);
+            freeHotbar &= freeHotbar - 1;
+            plan.add(containerSize + (i - 9), 0, SlotActionType.PICKUP);
+            plan.add(containerSize + 27 + hotbarSlot, 0, SlotActionType.PICKUP);
         }
-        return false;
-    }
-    
-    private float getItemDamage(ItemStack stack) {
-        // Simplified damage calculation
-        String itemName = stack.getItem().toString().toLowerCase();
-        if (itemName.contains("diamond")) return 7.0f;
-        if (itemName.contains("iron")) return 6.0f;
-        if (itemName.contains("stone")) return 5.0f;
-        if (itemName.contains("wood")) return 4.0f;
-        return 1.0f;
     }
-}
\ No newline at end of file
+}
@@ -157,6 +157,14 @@ public class BasePerimeter {
         }
     }
     
+    public BlockPos getMinCorner() {
+        return minCorner;
+    }
+    
+    public BlockPos getMaxCorner() {
+        return maxCorner;
+    }
+    
     public boolean isRecording() {
         return isRecordingPerimeter;
     }
@@ -2,61 +2,74 @@ package org.pluginmakers.antiafkplusplus.client.ai;
 
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.network.ClientPlayerEntity;
-import net.minecraft.item.ItemStack;
-import net.minecraft.item.Items;
-import net.minecraft.util.Hand;
-import net.minecraft.util.hit.BlockHitResult;
 import net.minecraft.util.math.BlockPos;
-import net.minecraft.util.math.Direction;
-import net.minecraft.util.math.Vec3d;
 import org.pluginmakers.antiafkplusplus.client.config.AntiAFKConfig;
+import org.pluginmakers.antiafkplusplus.client.inventory.InventoryIndex;
+import org.pluginmakers.antiafkplusplus.client.network.OutboundArbiter;
+import org.pluginmakers.antiafkplusplus.client.path.NavGrid;
 
 public class EmergencyManager {
     private final MinecraftClient client;
+    private final InventoryIndex inventory;
+    private final OutboundArbiter outbound;
     private final AntiAFKConfig config;
+    private final FallPredictor fallPredictor;
+    private boolean falling = false;
     private boolean clutchInProgress = false;
     private long lastClutchTime = 0;
     
-    public EmergencyManager(MinecraftClient client) {
+    private long clutches = 0;
+    private long lateClutches = 0;
+    
+    public EmergencyManager(MinecraftClient client, InventoryIndex inventory, OutboundArbiter outbound, NavGrid navGrid) {
         this.client = client;
+        this.inventory = inventory;
+        this.outbound = outbound;
         this.config = AntiAFKConfig.getInstance();
+        this.fallPredictor = new FallPredictor(client, navGrid);
     }
     
-    public boolean handleEmergency() {
-        if (!config.waterBucketClutch || client.player == null) return false;
-        
+    // Every client tick: a clutch placed on the AI's 50 ms cadence can miss the one tick it has
+    public void tick() {
         ClientPlayerEntity player = client.player;
+        if (player == null || client.world == null) return;
         
-        if (isFallingDangerously(player)) {
-            return performWaterBucketClutch(player);
+        if (player.isOnGround() || player.isTouchingWater() || player.getAbilities().flying || player.isGliding()) {
+            if (falling) {
+                fallPredictor.reset();
+                falling = false;
+                clutchInProgress = false;
+            }
+            return;
         }
         
-        return false;
-    }
-    
-    private boolean isFallingDangerously(ClientPlayerEntity player) {
-        if (player.getVelocity().y < -0.5 && !player.isOnGround()) {
-            Vec3d playerPos = player.getPos();
-            BlockPos groundPos = findGroundBelow(playerPos);
-            
-            if (groundPos != null) {
-                double fallDistance = playerPos.y - groundPos.getY();
-                return fallDistance > config.clutchHeight;
-            }
+        falling = true;
+        if (!config.waterBucketClutch || clutchInProgress || player.getVelocity().y >= 0) return;
+        
+        double reach = player.getBlockInteractionRange() - 0.5;
+        if (!fallPredictor.predict(player, reach) || fallPredictor.landsInWater()
+            || fallPredictor.getFallDistance() <= config.clutchHeight) {
+            return;
         }
-        return false;
-    }
-    
-    private BlockPos findGroundBelow(Vec3d playerPos) {
-        if (client.world == null) return null;
         
-        for (int y = (int)playerPos.y; y > client.world.getBottomY(); y--) {
-            BlockPos pos = new BlockPos((int)playerPos.x, y, (int)playerPos.z);
-            if (!client.world.getBlockState(pos).isAir()) {
-                return pos;
+        // Place on the first tick the landing block is in reach, or on the last one before impact
+        // when the fall is too fast to ever have it in reach
+        int reachTick = fallPredictor.getReachTick();
+        boolean lastChance = fallPredictor.getLandingTick() <= 1;
+        if (reachTick == 0 || lastChance) {
+            if (performWaterBucketClutch(player) && reachTick != 0) {
+                lateClutches++;
             }
         }
-        return null;
+    }
+    
+    // Keeps the AI off the controls while a clutch is under way
+    public boolean handleEmergency() {
+        return clutchInProgress;
+    }
+    
+    public String getStatsSummary() {
+        return fallPredictor.getStatsSummary() + ", " + clutches + " clutches (" + lateClutches + " out of reach)";
     }
     
     private boolean performWaterBucketClutch(ClientPlayerEntity player) {
@@ -64,62 +77,35 @@ public class EmergencyManager {
             return false;
         }
         
-        ItemStack waterBucket = findWaterBucket(player);
-        if (waterBucket.isEmpty()) return false;
+        inventory.refresh();
+        int bucketSlot = inventory.getWaterBucketSlot();
+        if (bucketSlot == -1) return false;
         
-        int bucketSlot = findItemSlot(waterBucket);
-        if (bucketSlot == -1 || bucketSlot >= 9) return false;
+        BlockPos placePos = new BlockPos(fallPredictor.getLandingX(), fallPredictor.getLandingY() - 1, fallPredictor.getLandingZ());
         
-        if (bucketSlot < 9) {
-            try {
-                java.lang.reflect.Field field = player.getInventory().getClass().getDeclaredField("selectedSlot");
-                field.setAccessible(true);
-                field.setInt(player.getInventory(), bucketSlot);
-            } catch (Exception e) {}
-        }
-        player.setPitch(90.0f);
+        // Face the top of the block the fall ends on
+        double dx = placePos.getX() + 0.5 - player.getX();
+        double dy = placePos.getY() + 1.0 - player.getEyeY();
+        double dz = placePos.getZ() + 0.5 - player.getZ();
+        double horizontal = Math.sqrt(dx * dx + dz * dz);
+        float yaw = horizontal < 1.0E-4 ? outbound.getYaw() : (float) (Math.atan2(dz, dx) * 180.0 / Math.PI) - 90.0f;
+        float pitch = (float) (-Math.atan2(dy, horizontal) * 180.0 / Math.PI);
         
-        Vec3d playerPos = player.getPos();
-        BlockPos placePos = new BlockPos((int)playerPos.x, (int)playerPos.y - 2, (int)playerPos.z);
-        
-        BlockHitResult hitResult = new BlockHitResult(
-            Vec3d.ofCenter(placePos),
-            Direction.UP,
-            placePos,
-            false
-        );
+        outbound.selectHotbarSlot(bucketSlot);
+        outbound.rotate(yaw, pitch);
         
+        // Emptying a bucket is an item use; the water goes where the look ray meets the landing block
         if (client.interactionManager != null) {
-            client.interactionManager.interactBlock(player, Hand.MAIN_HAND, hitResult);
+            outbound.interactItemNow();
             clutchInProgress = true;
             lastClutchTime = System.currentTimeMillis();
+            clutches++;
             return true;
         }
         
         return false;
     }
     
-    private ItemStack findWaterBucket(ClientPlayerEntity player) {
-        for (int i = 0; i < player.getInventory().size(); i++) {
-            ItemStack stack = player.getInventory().getStack(i);
-            if (stack.isOf(Items.WATER_BUCKET)) {
-                return stack;
-            }
-        }
-        return ItemStack.EMPTY;
-    }
-    
-    private int findItemSlot(ItemStack item) {
-        if (client.player == null) return -1;
-        
-        for (int i = 0; i < client.player.getInventory().size(); i++) {
-            if (ItemStack.areItemsEqual(client.player.getInventory().getStack(i), item)) {
-                return i;
-            }
-        }
-        return -1;
-    }
-    
     public boolean isClutchInProgress() {
         return clutchInProgress;
     }
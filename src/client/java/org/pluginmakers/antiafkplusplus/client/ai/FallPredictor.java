@@ -0,0 +1,176 @@
+package org.pluginmakers.antiafkplusplus.client.ai;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.network.ClientPlayerEntity;
+import net.minecraft.registry.tag.FluidTags;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.world.Heightmap;
+import net.minecraft.world.World;
+import org.pluginmakers.antiafkplusplus.client.path.NavGrid;
+
+// Steps a fall forward the way the game moves an airborne player each tick: move by the
+// velocity, then gravity and drag on the vertical part and air friction on the horizontal one.
+// Each column the player drifts over is resolved once per fall to the height it lands at, from
+// the heightmap when the player is above the column's top block and from the nav grid's floor
+// masks under overhangs, so a prediction is a few cached lookups plus arithmetic.
+public class FallPredictor {
+    public static final int NO_GROUND = Integer.MIN_VALUE;
+    public static final int WATER = Integer.MIN_VALUE + 1;
+
+    private static final double GRAVITY = 0.08;
+    private static final double DRAG = 0.98;
+    private static final double AIR_FRICTION = 0.91;
+    private static final int MAX_TICKS = 100;
+    private static final int MAX_CACHED_COLUMNS = 256;
+    private static final int MAX_SCAN_SECTIONS = 6;
+
+    private final MinecraftClient client;
+    private final NavGrid navGrid;
+    private final Long2IntOpenHashMap landingByColumn = new Long2IntOpenHashMap();
+    private final BlockPos.Mutable probe = new BlockPos.Mutable();
+
+    // Result of the last predict()
+    private int landingTick;
+    private int reachTick;
+    private int landingX, landingY, landingZ;
+    private boolean landsInWater;
+    private double fallDistance;
+
+    private long predictions = 0;
+    private long columnLookups = 0;
+
+    public FallPredictor(MinecraftClient client, NavGrid navGrid) {
+        this.client = client;
+        this.navGrid = navGrid;
+        landingByColumn.defaultReturnValue(NO_GROUND - 1);
+    }
+
+    // Landing heights were taken for the current fall, a new one starts from scratch
+    public void reset() {
+        landingByColumn.clear();
+    }
+
+    // False when nothing to land on turns up within MAX_TICKS. reach is the distance from the eyes
+    // at which the landing block's top can be clicked
+    public boolean predict(ClientPlayerEntity player, double reach) {
+        World world = client.world;
+        if (world == null) return false;
+        predictions++;
+        if (landingByColumn.size() > MAX_CACHED_COLUMNS) {
+            landingByColumn.clear();
+        }
+
+        Vec3d velocity = player.getVelocity();
+        double x = player.getX(), y = player.getY(), z = player.getZ();
+        double vx = velocity.x, vy = velocity.y, vz = velocity.z;
+        double eyeHeight = player.getStandingEyeHeight();
+        reachTick = -1;
+
+        for (int tick = 0; tick <= MAX_TICKS; tick++) {
+            int blockX = MathHelper.floor(x), blockZ = MathHelper.floor(z);
+            int ground = landingY(world, blockX, MathHelper.floor(y), blockZ);
+
+            if (ground == WATER || (ground != NO_GROUND && y <= ground)) {
+                landingTick = tick;
+                landingX = blockX;
+                landingZ = blockZ;
+                landsInWater = ground == WATER;
+                landingY = landsInWater ? MathHelper.floor(y) : ground;
+                fallDistance = player.fallDistance + (player.getY() - landingY);
+                return true;
+            }
+
+            // The top of the block landed on, seen from the eyes at this tick
+            if (reachTick == -1 && ground != NO_GROUND) {
+                double dx = blockX + 0.5 - x, dy = ground - (y + eyeHeight), dz = blockZ + 0.5 - z;
+                if (dx * dx + dy * dy + dz * dz <= reach * reach) {
+                    reachTick = tick;
+                }
+            }
+
+            x += vx;
+            y += vy;
+            z += vz;
+            vy = (vy - GRAVITY) * DRAG;
+            vx *= AIR_FRICTION;
+            vz *= AIR_FRICTION;
+        }
+        return false;
+    }
+
+    // Ticks from now until the feet reach the ground, 0 once they are there
+    public int getLandingTick() {
+        return landingTick;
+    }
+
+    // First tick from now on which the landing block is within reach, -1 if never before landing
+    public int getReachTick() {
+        return reachTick;
+    }
+
+    public int getLandingX() {
+        return landingX;
+    }
+
+    public int getLandingY() {
+        return landingY;
+    }
+
+    public int getLandingZ() {
+        return landingZ;
+    }
+
+    public boolean landsInWater() {
+        return landsInWater;
+    }
+
+    // Fall distance the game will have counted on impact
+    public double getFallDistance() {
+        return fallDistance;
+    }
+
+    public String getStatsSummary() {
+        double lookupsPerPrediction = predictions == 0 ? 0 : (double) columnLookups / predictions;
+        return "fall predictor: " + predictions + " predictions, " + String.format("%.2f", lookupsPerPrediction)
+            + " column lookups each";
+    }
+
+    // Feet height the player lands at in this column falling from y; WATER when the column's top
+    // is water, NO_GROUND when the chunk is missing or nothing is below
+    private int landingY(World world, int x, int y, int z) {
+        long column = BlockPos.asLong(x, 0, z);
+        int cached = landingByColumn.get(column);
+        if (cached != NO_GROUND - 1) return cached;
+
+        columnLookups++;
+        int landing = computeLandingY(world, x, y, z);
+        landingByColumn.put(column, landing);
+        return landing;
+    }
+
+    private int computeLandingY(World world, int x, int y, int z) {
+        if (!world.getChunkManager().isChunkLoaded(x >> 4, z >> 4)) return NO_GROUND;
+
+        // First free block above the highest one that stops movement, fluids and leaves included
+        int top = world.getTopY(Heightmap.Type.MOTION_BLOCKING, x, z);
+        if (top <= y) {
+            return world.getFluidState(probe.set(x, top - 1, z)).isIn(FluidTags.WATER) ? WATER : top;
+        }
+
+        // Under an overhang or in a cave, the nearest floor below from the column's masks
+        int bottomSection = Math.max(world.getBottomSectionCoord(), (y >> 4) - MAX_SCAN_SECTIONS + 1);
+        for (int sectionY = y >> 4; sectionY >= bottomSection; sectionY--) {
+            int mask = navGrid.columnFloors(x, sectionY, z);
+            if (sectionY == y >> 4) {
+                mask &= (2 << (y & 15)) - 1;
+            }
+            if (mask != 0) {
+                return (sectionY << 4) + 31 - Integer.numberOfLeadingZeros(mask);
+            }
+        }
+        return NO_GROUND;
+    }
+}
@@ -1,58 +1,381 @@
 package org.pluginmakers.antiafkplusplus.client.ai;
 
+import it.unimi.dsi.fastutil.longs.LongArrayList;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.network.ClientPlayerEntity;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
 import net.minecraft.util.math.Vec3d;
-import net.minecraft.world.World;
-import net.minecraft.block.BlockState;
-import net.minecraft.block.Blocks;
+import org.pluginmakers.antiafkplusplus.client.network.OutboundArbiter;
+import org.pluginmakers.antiafkplusplus.client.path.HierarchicalPlanner;
+import org.pluginmakers.antiafkplusplus.client.path.NavGrid;
+import org.pluginmakers.antiafkplusplus.client.path.Path;
+import org.pluginmakers.antiafkplusplus.client.path.PathFinder;
+import org.pluginmakers.antiafkplusplus.client.path.PathService;
 
 import java.util.concurrent.ThreadLocalRandom;
 
 public class MovementController {
+    // Any standing spot within two blocks of the target is close enough to act on it
+    private static final int GOAL_RANGE_SQ = 2 * 2;
+    private static final double WAYPOINT_REACHED_SQ = 0.5 * 0.5;
+    private static final double OFF_PATH_SQ = 3.0 * 3.0;
+    private static final long REPLAN_INTERVAL_MS = 1000;
+    // Waypoints kept on each side of a broken one when only that stretch is searched again
+    private static final int REPAIR_MARGIN = 2;
+    // Farther targets get a corridor of regions first, then one block-level search per stretch
+    private static final double LONG_TRIP_SQ = 48.0 * 48.0;
+    private static final double SEGMENT_SQ = 24.0 * 24.0;
+    private static final long CORRIDOR_BUDGET_NANOS = 4_000_000;
+    // Block changes remembered while a search runs; past this many the result is searched again outright
+    private static final int MAX_CHANGES_WHILE_PENDING = 64;
+    // Every this many long trips a flat search over the whole trip is run too, for the stats only
+    private static final int FLAT_SAMPLE_INTERVAL = 8;
+    
     private final MinecraftClient client;
-    private final PathFinder pathFinder;
-    private BlockPos currentTarget;
+    private final OutboundArbiter outbound;
+    private final PathService pathService;
+    private final NavGrid navGrid;
+    private final HierarchicalPlanner planner;
+    private final TargetSampler targetSampler;
+    private Path path;
+    private Path corridor;
+    private int pendingRequest = -1;
+    // Changed after the pending search took its snapshot, checked against the result when it arrives
+    private final LongArrayList changesWhilePending = new LongArrayList();
+    private boolean tooManyChanges = false;
+    private long lastPlanTime = 0;
+    private long repairs = 0;
+    private long repairFallbacks = 0;
+    private long segments = 0;
+    // Cost of long trips: coarse plans plus every block-level search made while one is under way
+    private boolean inLongTrip = false;
+    private long longTrips = 0;
+    private long hierarchicalNanos = 0;
+    private long hierarchicalNodes = 0;
+    private long flatSamples = 0;
+    private long flatUnfinished = 0;
+    private long flatNanos = 0;
+    private long flatNodes = 0;
+    // Reused so steering towards a target allocates nothing
+    private final BlockPos.Mutable currentTarget = new BlockPos.Mutable();
+    private final BlockPos.Mutable segmentGoal = new BlockPos.Mutable();
+    private final BlockPos.Mutable probe = new BlockPos.Mutable();
+    private boolean hasTarget = false;
+    private double directionX, directionZ;
     private long lastMovementTime = 0;
     private boolean isMoving = false;
     
-    public MovementController(MinecraftClient client) {
+    public MovementController(MinecraftClient client, OutboundArbiter outbound, PathService pathService, NavGrid navGrid,
+                              HierarchicalPlanner planner, TargetSampler targetSampler) {
         this.client = client;
-        this.pathFinder = new PathFinder();
+        this.outbound = outbound;
+        this.pathService = pathService;
+        this.navGrid = navGrid;
+        this.planner = planner;
+        this.targetSampler = targetSampler;
     }
     
     public void moveTowards(BlockPos target) {
         if (client.player == null || client.world == null) return;
         
-        this.currentTarget = target;
-        ClientPlayerEntity player = client.player;
+        boolean newTarget = !hasTarget || !currentTarget.equals(target);
+        currentTarget.set(target);
+        hasTarget = true;
         
-        Vec3d playerPos = player.getPos();
-        Vec3d targetPos = Vec3d.ofCenter(target);
-        double distance = playerPos.distanceTo(targetPos);
+        if (hasArrived()) {
+            stopMovement();
+            return;
+        }
+        
+        if (newTarget) {
+            path = null; // The old route leads somewhere else, walk straight until the new one arrives
+            corridor = null;
+            inLongTrip = false;
+            planPath();
+        } else if (needsReplan()) {
+            planPath();
+        }
+        steer();
+    }
+    
+    // Keeps walking the current path between decisions, false when there is nothing to follow
+    public boolean continuePath() {
+        if (!hasTarget || path == null || client.player == null || client.world == null) return false;
         
-        if (distance < 1.5) {
+        if (hasArrived()) {
             stopMovement();
+            return false;
+        }
+        
+        if (needsReplan()) {
+            planPath();
+        }
+        steer();
+        return true;
+    }
+    
+    // A block change on or next to the route ahead: search again only around the broken stretch
+    public void onBlockChanged(BlockPos pos) {
+        if (client.player == null) return;
+        if (isPlanPending()) {
+            // The running search cannot see it, its result is checked once it arrives
+            if (changesWhilePending.size() < MAX_CHANGES_WHILE_PENDING) {
+                changesWhilePending.add(pos.asLong());
+            } else {
+                tooManyChanges = true;
+            }
+            return;
+        }
+        if (path == null || path.isDone()) return;
+        
+        int broken = -1;
+        for (int i = path.getCursor(); i < path.size(); i++) {
+            long node = path.get(i);
+            int x = BlockPos.unpackLongX(node), y = BlockPos.unpackLongY(node), z = BlockPos.unpackLongZ(node);
+            if (Math.abs(pos.getX() - x) > 1 || Math.abs(pos.getZ() - z) > 1 || pos.getY() < y - 1 || pos.getY() > y + 1) continue;
+            
+            if (!navGrid.canStand(x, y, z)) {
+                broken = i;
+                break;
+            }
+        }
+        if (broken == -1) return; // Still walkable, e.g. a flower or a block beside the route
+        
+        int from = broken - REPAIR_MARGIN >= path.getCursor() ? broken - REPAIR_MARGIN : -1;
+        int to = Math.min(path.size() - 1, broken + REPAIR_MARGIN);
+        while (to < path.size() - 1 && !canStand(path.get(to))) to++;
+        if (!canStand(path.get(to))) {
+            planPath(); // The end of the route itself is gone
+            return;
+        }
+        
+        Path base = path;
+        int repairFrom = from;
+        int repairTo = to;
+        long start = from == -1 ? client.player.getBlockPos().asLong() : path.get(from);
+        long goal = path.get(to);
+        clearChanges();
+        pendingRequest = pathService.request(BlockPos.unpackLongX(start), BlockPos.unpackLongY(start), BlockPos.unpackLongZ(start),
+            BlockPos.unpackLongX(goal), BlockPos.unpackLongY(goal), BlockPos.unpackLongZ(goal), 0,
+            segment -> onRepairReady(base, repairFrom, repairTo, segment));
+    }
+    
+    public String getPathStatsSummary() {
+        long tripNodes = longTrips == 0 ? 0 : hierarchicalNodes / longTrips;
+        long tripMicros = longTrips == 0 ? 0 : hierarchicalNanos / longTrips / 1000;
+        long flatSampleNodes = flatSamples == 0 ? 0 : flatNodes / flatSamples;
+        long flatSampleMicros = flatSamples == 0 ? 0 : flatNanos / flatSamples / 1000;
+        return pathService.getStatsSummary() + ", " + repairs + " repairs (" + repairFallbacks + " fell back to a full search)\n"
+            + planner.getStatsSummary() + ", " + segments + " stretches planned\n"
+            + "long trips: " + longTrips + ", hierarchical " + tripNodes + " nodes / " + tripMicros + "us per trip; flat "
+            + flatSamples + " sampled, " + flatSampleNodes + " nodes / " + flatSampleMicros + "us each, "
+            + flatUnfinished + " did not reach the goal";
+    }
+    
+    private void planPath() {
+        ClientPlayerEntity player = client.player;
+        lastPlanTime = System.currentTimeMillis();
+        
+        BlockPos goal = currentTarget;
+        boolean tripStarted = false;
+        if (horizontalDistanceSq(currentTarget.getX(), currentTarget.getZ()) > LONG_TRIP_SQ) {
+            if (corridor == null || corridor.isDone()) {
+                Path route = planner.plan(player.getBlockX(), player.getBlockY(), player.getBlockZ(),
+                    currentTarget.getX(), currentTarget.getY(), currentTarget.getZ(), CORRIDOR_BUDGET_NANOS);
+                corridor = route.getResult() == Path.Result.FAILED || route.size() == 0 ? null : route;
+                if (corridor != null && !inLongTrip) {
+                    inLongTrip = true;
+                    tripStarted = true;
+                    longTrips++;
+                }
+                if (inLongTrip) {
+                    hierarchicalNanos += planner.getLastNanos();
+                }
+            }
+            if (corridor != null) {
+                goal = nextSegmentGoal();
+                segments++;
+            }
+        } else {
+            corridor = null; // Close enough for a single search
+        }
+        
+        clearChanges();
+        pendingRequest = pathService.request(player.getBlockX(), player.getBlockY(), player.getBlockZ(),
+            goal.getX(), goal.getY(), goal.getZ(), GOAL_RANGE_SQ, this::onPathReady);
+        // Queued behind the real search so the worker never makes it wait
+        if (tripStarted && longTrips % FLAT_SAMPLE_INTERVAL == 1) {
+            sampleFlat(player);
+        }
+    }
+    
+    private void sampleFlat(ClientPlayerEntity player) {
+        pathService.sample(player.getBlockX(), player.getBlockY(), player.getBlockZ(),
+            currentTarget.getX(), currentTarget.getY(), currentTarget.getZ(), flat -> {
+                flatSamples++;
+                flatNodes += flat.getSearchNodes();
+                flatNanos += flat.getSearchNanos();
+                if (flat.getResult() != Path.Result.FOUND) flatUnfinished++;
+            });
+    }
+    
+    private void addTripCost(Path result) {
+        if (!inLongTrip) return;
+        
+        hierarchicalNodes += result.getSearchNodes();
+        hierarchicalNanos += result.getSearchNanos();
+    }
+    
+    // Farthest corridor waypoint within one stretch of the player, or the next one if even that is
+    // farther. It is consumed, so the following stretch starts from the waypoint after it
+    private BlockPos nextSegmentGoal() {
+        while (corridor.getCursor() + 1 < corridor.size()) {
+            long next = corridor.get(corridor.getCursor() + 1);
+            if (horizontalDistanceSq(BlockPos.unpackLongX(next), BlockPos.unpackLongZ(next)) > SEGMENT_SQ) break;
+            corridor.advance();
+        }
+        segmentGoal.set(corridor.currentX(), corridor.currentY(), corridor.currentZ());
+        corridor.advance();
+        return segmentGoal;
+    }
+    
+    private void onPathReady(Path result) {
+        pendingRequest = -1;
+        addTripCost(result);
+        // A failed search leaves the straight walk in place until the next attempt
+        path = result.getResult() == Path.Result.FAILED ? null : result;
+        recheckChanges();
+    }
+    
+    private void onRepairReady(Path base, int from, int to, Path segment) {
+        pendingRequest = -1;
+        addTripCost(segment);
+        if (path != base || !hasTarget) {
+            clearChanges();
+            return;
+        }
+        
+        if (segment.getResult() == Path.Result.FOUND) {
+            path = base.splice(from, to, segment);
+            repairs++;
+            recheckChanges();
+        } else {
+            repairFallbacks++;
+            planPath();
+        }
+    }
+    
+    // Runs the changes the result's snapshot missed through the usual route check; the first one
+    // that breaks the route starts a new search, which sees the rest
+    private void recheckChanges() {
+        if (tooManyChanges) {
+            clearChanges();
+            if (path != null && hasTarget && client.player != null) planPath();
             return;
         }
         
-        Vec3d direction = targetPos.subtract(playerPos).normalize();
+        for (int i = 0; i < changesWhilePending.size() && !isPlanPending(); i++) {
+            onBlockChanged(probe.set(changesWhilePending.getLong(i)));
+        }
+        if (!isPlanPending()) {
+            clearChanges();
+        }
+    }
+    
+    private void clearChanges() {
+        changesWhilePending.clear();
+        tooManyChanges = false;
+    }
+    
+    private boolean isPlanPending() {
+        return pendingRequest != -1 && pathService.isCurrent(pendingRequest);
+    }
+    
+    private boolean canStand(long node) {
+        return navGrid.canStand(BlockPos.unpackLongX(node), BlockPos.unpackLongY(node), BlockPos.unpackLongZ(node));
+    }
+    
+    private boolean needsReplan() {
+        if (isPlanPending()) return false;
+        
+        // A stretch of a long trip walked, plan the next one right away
+        if (corridor != null && path != null && path.isDone()) return true;
+        if (System.currentTimeMillis() - lastPlanTime < REPLAN_INTERVAL_MS) return false;
+        
+        // No route yet, or a partial one walked to its end
+        if (path == null || path.isDone()) {
+            return path == null || path.getResult() == Path.Result.PARTIAL;
+        }
+        
+        // Knocked or pushed away from the route
+        return horizontalDistanceSq(path.currentX(), path.currentZ()) > OFF_PATH_SQ;
+    }
+    
+    private void steer() {
+        ClientPlayerEntity player = client.player;
         
-        // Add some randomness for realistic movement
-        direction = addMovementNoise(direction);
+        // Skip waypoints the player already stands on, or is dropping onto
+        while (path != null && !path.isDone()
+            && horizontalDistanceSq(path.currentX(), path.currentZ()) < WAYPOINT_REACHED_SQ
+            && isAtWaypointHeight(player, path.currentY())) {
+            path.advance();
+        }
         
-        // Set movement inputs
-        setMovementInputs(direction);
+        // Between stretches of a long trip, head for the end of the current one
+        BlockPos heading = corridor != null ? segmentGoal : currentTarget;
+        double targetX = heading.getX() + 0.5;
+        double targetY = heading.getY() + 0.5;
+        double targetZ = heading.getZ() + 0.5;
+        
+        if (path == null || path.isDone()) {
+            // No route or the last stretch, head straight for the target
+            double dx = targetX - player.getX();
+            double dy = targetY - player.getY();
+            double dz = targetZ - player.getZ();
+            double distance = Math.sqrt(dx * dx + dy * dy + dz * dz);
+            
+            addMovementNoise(dx / distance, dy / distance, dz / distance);
+            setMovementInputs();
+            handleJumping(player);
+        } else {
+            double dx = path.currentX() + 0.5 - player.getX();
+            double dz = path.currentZ() + 0.5 - player.getZ();
+            double distance = Math.sqrt(dx * dx + dz * dz);
+            if (distance > 1.0E-4) {
+                addMovementNoise(dx / distance, 0, dz / distance);
+            }
+            setMovementInputs();
+            
+            // Next waypoint is a block up
+            if (path.currentY() > player.getBlockY() && player.isOnGround()) {
+                player.jump();
+            }
+        }
         
-        // Handle jumping and looking
-        handleJumping(player);
-        lookTowards(targetPos);
+        lookTowards(targetX, targetY, targetZ);
         
         isMoving = true;
         lastMovementTime = System.currentTimeMillis();
     }
     
+    // Level with the waypoint, or in the air above it no higher than a planned fall
+    private boolean isAtWaypointHeight(ClientPlayerEntity player, int waypointY) {
+        double dy = player.getY() - waypointY;
+        if (Math.abs(dy) < 1.0) return true;
+        return dy > 0 && dy < PathFinder.MAX_FALL + 1 && !player.isOnGround();
+    }
+    
+    private boolean hasArrived() {
+        return client.player.squaredDistanceTo(currentTarget.getX() + 0.5, currentTarget.getY() + 0.5, currentTarget.getZ() + 0.5) < 1.5 * 1.5;
+    }
+    
+    private double horizontalDistanceSq(int blockX, int blockZ) {
+        double dx = blockX + 0.5 - client.player.getX();
+        double dz = blockZ + 0.5 - client.player.getZ();
+        return dx * dx + dz * dz;
+    }
+    
     public void randomWalk() {
         if (client.player == null) return;
         
@@ -70,9 +393,11 @@ public class MovementController {
             return;
         }
         
-        BlockPos playerPos = client.player.getBlockPos();
-        BlockPos randomTarget = generateRandomTarget(playerPos);
-        moveTowards(randomTarget);
+        if (targetSampler.sample(client.player.getBlockPos(), 2, 24, TargetSampler.AVOID_HAZARDS, probe)) {
+            moveTowards(probe);
+        } else {
+            standStill();
+        }
     }
     
     private void standStill() {
@@ -82,22 +407,24 @@ public class MovementController {
         
         // Random look around while standing
         ThreadLocalRandom random = ThreadLocalRandom.current();
-        float randomYaw = client.player.getYaw() + (random.nextFloat() - 0.5f) * 60f;
+        float randomYaw = outbound.getYaw() + (random.nextFloat() - 0.5f) * 60f;
         float randomPitch = (random.nextFloat() - 0.5f) * 30f;
         
-        client.player.setYaw(randomYaw);
-        client.player.setPitch(randomPitch);
+        outbound.rotate(randomYaw, randomPitch);
     }
     
-    private Vec3d addMovementNoise(Vec3d direction) {
+    // Only the horizontal part of the noisy direction is kept, movement never sets vertical velocity
+    private void addMovementNoise(double x, double y, double z) {
         ThreadLocalRandom random = ThreadLocalRandom.current();
-        double noiseX = (random.nextDouble() - 0.5) * 0.1;
-        double noiseZ = (random.nextDouble() - 0.5) * 0.1;
+        double noisyX = x + (random.nextDouble() - 0.5) * 0.1;
+        double noisyZ = z + (random.nextDouble() - 0.5) * 0.1;
         
-        return direction.add(noiseX, 0, noiseZ).normalize();
+        double length = Math.sqrt(noisyX * noisyX + y * y + noisyZ * noisyZ);
+        directionX = noisyX / length;
+        directionZ = noisyZ / length;
     }
     
-    private void setMovementInputs(Vec3d direction) {
+    private void setMovementInputs() {
         if (client.player == null) return;
         
         ThreadLocalRandom random = ThreadLocalRandom.current();
@@ -111,46 +438,50 @@ public class MovementController {
             speedMultiplier *= 1.5; // Faster when jumping
         }
         
-        Vec3d velocity = new Vec3d(direction.x * speedMultiplier, 0, direction.z * speedMultiplier);
-        if (Math.abs(direction.x) > 0.1 && Math.abs(direction.z) > 0.1) {
-            velocity = velocity.multiply(0.8);
+        if (Math.abs(directionX) > 0.1 && Math.abs(directionZ) > 0.1) {
+            speedMultiplier *= 0.8;
         }
-        client.player.setVelocity(velocity);
+        // Vertical velocity is left to gravity and jumps, so drops and step-ups planned by the
+        // path finder actually happen
+        client.player.setVelocity(directionX * speedMultiplier, client.player.getVelocity().y,
+            directionZ * speedMultiplier);
     }
     
     private void handleJumping(ClientPlayerEntity player) {
         if (client.world == null) return;
         
         // Check if there's a block in front that requires jumping
-        Vec3d lookDirection = player.getRotationVector();
         float yaw = player.getYaw();
-        net.minecraft.util.math.Direction facing = net.minecraft.util.math.Direction.NORTH;
+        Direction facing = Direction.NORTH;
         int facingIndex = Math.round(yaw / 90.0f) & 3;
         switch (facingIndex) {
-            case 0 -> facing = net.minecraft.util.math.Direction.SOUTH;
-            case 1 -> facing = net.minecraft.util.math.Direction.WEST;
-            case 2 -> facing = net.minecraft.util.math.Direction.NORTH;
-            case 3 -> facing = net.minecraft.util.math.Direction.EAST;
+            case 0 -> facing = Direction.SOUTH;
+            case 1 -> facing = Direction.WEST;
+            case 2 -> facing = Direction.NORTH;
+            case 3 -> facing = Direction.EAST;
         }
-        BlockPos frontPos = player.getBlockPos().offset(facing);
+        int frontX = player.getBlockX() + facing.getOffsetX();
+        int frontZ = player.getBlockZ() + facing.getOffsetZ();
         
-        BlockState frontBlock = client.world.getBlockState(frontPos);
-        BlockState aboveBlock = client.world.getBlockState(frontPos.up());
-        
-        if (!frontBlock.isAir() && aboveBlock.isAir() && player.isOnGround()) {
+        // Blocked at the feet with room to land on top of it
+        if (!navGrid.isPassable(frontX, player.getBlockY(), frontZ)
+            && navGrid.canStand(frontX, player.getBlockY() + 1, frontZ) && player.isOnGround()) {
             client.player.jump();
         }
     }
     
-    private void lookTowards(Vec3d target) {
+    private void lookTowards(double targetX, double targetY, double targetZ) {
         if (client.player == null) return;
         
-        Vec3d playerPos = client.player.getEyePos();
-        Vec3d direction = target.subtract(playerPos).normalize();
+        double dx = targetX - client.player.getX();
+        double dy = targetY - client.player.getEyeY();
+        double dz = targetZ - client.player.getZ();
+        double length = Math.sqrt(dx * dx + dy * dy + dz * dz);
+        if (length < 1.0E-4) return;
         
         // Calculate yaw and pitch
-        float yaw = (float) (Math.atan2(direction.x, direction.z) * 180.0 / Math.PI);
-        float pitch = (float) (Math.asin(-direction.y) * 180.0 / Math.PI);
+        float yaw = (float) (Math.atan2(dx / length, dz / length) * 180.0 / Math.PI);
+        float pitch = (float) (Math.asin(-dy / length) * 180.0 / Math.PI);
         
         // Add slight randomness to look more natural
         ThreadLocalRandom random = ThreadLocalRandom.current();
@@ -158,8 +489,8 @@ public class MovementController {
         pitch += (random.nextFloat() - 0.5f) * 3.0f;
         
         // Smoothly interpolate to new rotation
-        float currentYaw = client.player.getYaw();
-        float currentPitch = client.player.getPitch();
+        float currentYaw = outbound.getYaw();
+        float currentPitch = outbound.getPitch();
         
         float yawDiff = yaw - currentYaw;
         float pitchDiff = pitch - currentPitch;
@@ -170,31 +501,7 @@ public class MovementController {
         
         // Apply smooth rotation
         float rotationSpeed = 0.1f;
-        client.player.setYaw(currentYaw + yawDiff * rotationSpeed);
-        client.player.setPitch(currentPitch + pitchDiff * rotationSpeed);
-    }
-    
-    private BlockPos generateRandomTarget(BlockPos center) {
-        ThreadLocalRandom random = ThreadLocalRandom.current();
-        int range = 8 + random.nextInt(16); // Larger movement range
-        
-        int x = center.getX() + (random.nextInt(range * 2) - range);
-        int z = center.getZ() + (random.nextInt(range * 2) - range);
-        int y = center.getY();
-        
-        // Find safe ground level
-        if (client.world != null) {
-            for (int checkY = y + 5; checkY > y - 15; checkY--) {
-                BlockPos checkPos = new BlockPos(x, checkY, z);
-                if (!client.world.getBlockState(checkPos).isAir() && 
-                    client.world.getBlockState(checkPos.up()).isAir() &&
-                    client.world.getBlockState(checkPos.up(2)).isAir()) {
-                    return checkPos.up();
-                }
-            }
-        }
-        
-        return new BlockPos(x, y, z);
+        outbound.rotate(currentYaw + yawDiff * rotationSpeed, currentPitch + pitchDiff * rotationSpeed);
     }
     
     public void stopMovement() {
@@ -202,6 +509,15 @@ public class MovementController {
         
         client.player.setVelocity(Vec3d.ZERO);
         isMoving = false;
+        hasTarget = false;
+        path = null;
+        corridor = null;
+        inLongTrip = false;
+        clearChanges();
+        if (pendingRequest != -1) {
+            pathService.cancel();
+            pendingRequest = -1;
+        }
     }
     
     public boolean isMoving() {
@@ -209,49 +525,32 @@ public class MovementController {
     }
     
     public boolean hasReachedTarget() {
-        if (currentTarget == null || client.player == null) return true;
+        if (!hasTarget || client.player == null) return true;
         
-        return client.player.getPos().distanceTo(Vec3d.ofCenter(currentTarget)) < 2.0;
+        return client.player.squaredDistanceTo(currentTarget.getX() + 0.5, currentTarget.getY() + 0.5, currentTarget.getZ() + 0.5) < 4.0;
     }
     
-    public void applyLearnedPattern(java.util.List<org.pluginmakers.antiafkplusplus.client.ai.MovementLearner.MovementStep> pattern) {
-        if (client.player == null || pattern.isEmpty()) return;
+    public void applyLearnedPattern(MovementPattern pattern) {
+        if (client.player == null || pattern.size() == 0) return;
         
-        // Apply the first few steps of the pattern with current position as base
-        int stepsToApply = Math.min(3, pattern.size());
+        // Apply the first step of the pattern with current position as base; one step per call
+        // keeps the movement smooth
+        client.player.setVelocity(pattern.deltaX(0) * 3, 0, pattern.deltaZ(0) * 3);
         
-        for (int i = 0; i < stepsToApply; i++) {
-            var step = pattern.get(i);
-            
-            // Apply movement with scaling
-            Vec3d velocity = new Vec3d(step.deltaX * 3, 0, step.deltaZ * 3);
-            client.player.setVelocity(velocity);
-            
-            // Apply rotation smoothly
-            float yawDiff = step.yaw - client.player.getYaw();
-            while (yawDiff > 180) yawDiff -= 360;
-            while (yawDiff < -180) yawDiff += 360;
-            
-            client.player.setYaw(client.player.getYaw() + yawDiff * 0.2f);
-            client.player.setPitch(client.player.getPitch() + (step.pitch - client.player.getPitch()) * 0.2f);
-            
-            // Apply jumping if learned
-            if (step.isJumping && client.player.isOnGround() && ThreadLocalRandom.current().nextFloat() < 0.8f) {
-                client.player.jump();
-            }
-            
-            break; // Only apply first step per call for smooth movement
+        // Apply rotation smoothly
+        float yawDiff = pattern.yaw(0) - outbound.getYaw();
+        while (yawDiff > 180) yawDiff -= 360;
+        while (yawDiff < -180) yawDiff += 360;
+        
+        outbound.rotate(outbound.getYaw() + yawDiff * 0.2f,
+            outbound.getPitch() + (pattern.pitch(0) - outbound.getPitch()) * 0.2f);
+        
+        // Apply jumping if learned
+        if (pattern.isJumping(0) && client.player.isOnGround() && ThreadLocalRandom.current().nextFloat() < 0.8f) {
+            client.player.jump();
         }
         
         isMoving = true;
         lastMovementTime = System.currentTimeMillis();
     }
-    
-    private static class PathFinder {
-        // Simplified pathfinding - can be expanded later
-        public boolean canReach(World world, BlockPos from, BlockPos to) {
-            // Basic line-of-sight check
-            return true; // Simplified for now
-        }
-    }
 }
\ No newline at end of file
@@ -2,128 +2,151 @@ package org.pluginmakers.antiafkplusplus.client.ai;
 
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.util.math.Vec3d;
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
+import org.pluginmakers.antiafkplusplus.client.network.OutboundArbiter;
+import org.pluginmakers.antiafkplusplus.client.path.NavGrid;
+import org.pluginmakers.antiafkplusplus.client.scheduler.TickScheduler;
 
-import java.io.*;
-import java.lang.reflect.Type;
-import java.util.*;
+import java.io.File;
 import java.util.concurrent.ThreadLocalRandom;
 
 public class MovementLearner {
     private final MinecraftClient client;
-    private final List<MovementPattern> learnedPatterns = new ArrayList<>();
-    private final File dataFile;
-    private final Gson gson = new Gson();
+    private final TickScheduler scheduler;
+    private final OutboundArbiter outbound;
+    private final PatternStore store;
+    private final PatternContext context;
     
-    private Vec3d lastPosition = Vec3d.ZERO;
+    private final StepRing recording = new StepRing(MAX_RECORDED_STEPS);
+    private final float[] terrain = new float[PatternContext.DIMENSIONS];
+    
+    // Terrain part refreshed on every pick, motion part pulled halfway from UNKNOWN towards the
+    // segment played last, so consecutive segments keep a similar pace and turning without the
+    // choice locking in on one style
+    private final float[] query = new float[PatternContext.DIMENSIONS];
+    private final float[] played = new float[PatternContext.DIMENSIONS];
+    private final int[] candidates = new int[CANDIDATES];
+    
+    private double lastX, lastY, lastZ;
     private long lastRecordTime = 0;
     private boolean isRecording = false;
-    private MovementPattern currentPattern = null;
+    private TickScheduler.Task playback;
     
-    private static final int MAX_PATTERNS = 50;
     private static final int MIN_PATTERN_LENGTH = 5;
+    private static final int MAX_RECORDED_STEPS = 100; // Latest steps kept per recording
     private static final long RECORD_INTERVAL = 100; // ms
+    private static final int CANDIDATES = 8; // Closest patterns a pick is made from, for variety
     
-    public MovementLearner(MinecraftClient client) {
+    public MovementLearner(MinecraftClient client, TickScheduler scheduler, OutboundArbiter outbound, NavGrid navGrid) {
         this.client = client;
-        this.dataFile = new File(client.runDirectory, "config/antiafkplusplus_movement.json");
-        loadPatterns();
+        this.scheduler = scheduler;
+        this.outbound = outbound;
+        this.store = new PatternStore(new File(client.runDirectory, "config"));
+        this.context = new PatternContext(client, navGrid);
+        query[PatternContext.SPRINT_RATIO] = PatternContext.UNKNOWN;
+        query[PatternContext.HEADING_CHANGE] = PatternContext.UNKNOWN;
     }
     
     public void startLearning() {
         if (client.player == null) return;
         
         isRecording = true;
-        lastPosition = client.player.getPos();
+        lastX = client.player.getX();
+        lastY = client.player.getY();
+        lastZ = client.player.getZ();
         lastRecordTime = System.currentTimeMillis();
-        currentPattern = new MovementPattern();
+        recording.clear();
     }
     
     public void stopLearning() {
-        if (isRecording && currentPattern != null && currentPattern.movements.size() >= MIN_PATTERN_LENGTH) {
-            learnedPatterns.add(currentPattern);
-            
-            // Keep only the most recent patterns
-            if (learnedPatterns.size() > MAX_PATTERNS) {
-                learnedPatterns.remove(0);
-            }
+        if (isRecording && recording.size() >= MIN_PATTERN_LENGTH) {
+            MovementPattern pattern = recording.freeze();
+            float[] features = new float[PatternContext.DIMENSIONS];
+            recording.averageTerrain(features);
+            PatternContext.motion(pattern, features);
             
-            savePatterns();
+            // Written by the store's writer thread, the oldest recordings go once the library is full
+            store.append(pattern, features);
         }
         
         isRecording = false;
-        currentPattern = null;
+        recording.clear();
     }
     
     public void recordMovement() {
-        if (!isRecording || client.player == null || currentPattern == null) return;
+        if (!isRecording || client.player == null) return;
         
         long currentTime = System.currentTimeMillis();
         if (currentTime - lastRecordTime < RECORD_INTERVAL) return;
         
-        Vec3d currentPos = client.player.getPos();
-        Vec3d movement = currentPos.subtract(lastPosition);
-        
-        // Only record if there's actual movement
-        if (movement.lengthSquared() > 0.001) {
-            MovementStep step = new MovementStep();
-            step.deltaX = movement.x;
-            step.deltaY = movement.y;
-            step.deltaZ = movement.z;
-            step.yaw = client.player.getYaw();
-            step.pitch = client.player.getPitch();
-            step.isJumping = !client.player.isOnGround();
-            step.isSprinting = client.player.isSprinting();
-            step.timeDelta = currentTime - lastRecordTime;
-            
-            currentPattern.movements.add(step);
+        double x = client.player.getX(), y = client.player.getY(), z = client.player.getZ();
+        double dx = x - lastX, dy = y - lastY, dz = z - lastZ;
+        
+        // Only record if there's actual movement; once full the ring drops the oldest step
+        if (dx * dx + dy * dy + dz * dz > 0.001) {
+            recording.push(dx, dy, dz, client.player.getYaw(), client.player.getPitch(),
+                currentTime - lastRecordTime, !client.player.isOnGround(), client.player.isSprinting());
             
-            // Limit pattern length to prevent memory issues
-            if (currentPattern.movements.size() > 100) {
-                currentPattern.movements.remove(0);
+            // Kept with the step so steps the ring drops take their terrain with them
+            if (context.sampleTerrain(terrain)) {
+                recording.setTerrain(terrain[PatternContext.ROUGHNESS], terrain[PatternContext.FREE_DIRECTIONS]);
             }
         }
         
-        lastPosition = currentPos;
+        lastX = x;
+        lastY = y;
+        lastZ = z;
         lastRecordTime = currentTime;
     }
     
     public MovementPattern getRandomPattern() {
-        if (learnedPatterns.isEmpty()) {
+        int count = store.size();
+        if (count == 0) {
             return generateDefaultPattern();
         }
         
-        return learnedPatterns.get(ThreadLocalRandom.current().nextInt(learnedPatterns.size()));
+        return store.read(ThreadLocalRandom.current().nextInt(count));
+    }
+    
+    // One of the patterns recorded in surroundings most like the current ones
+    public MovementPattern getMatchingPattern() {
+        if (store.size() == 0 || !context.sampleTerrain(query)) {
+            return getRandomPattern();
+        }
+        
+        int found = store.nearest(query, candidates);
+        MovementPattern pattern = found == 0 ? null : store.read(candidates[ThreadLocalRandom.current().nextInt(found)]);
+        return pattern == null ? getRandomPattern() : pattern;
     }
     
     public void applyLearnedMovement(MovementController controller) {
         if (client.player == null) return;
+        if (playback != null && playback.isActive()) return; // Let the running segment finish
         
-        MovementPattern pattern = getRandomPattern();
-        if (pattern.movements.isEmpty()) return;
+        MovementPattern pattern = getMatchingPattern();
+        if (pattern == null || pattern.size() == 0) return;
         
         // Apply a random segment of the pattern
-        int startIndex = ThreadLocalRandom.current().nextInt(Math.max(1, pattern.movements.size() - 10));
-        int endIndex = Math.min(startIndex + 5 + ThreadLocalRandom.current().nextInt(10), pattern.movements.size());
-        
-        new Thread(() -> {
-            try {
-                for (int i = startIndex; i < endIndex && i < pattern.movements.size(); i++) {
-                    if (client.player == null) break;
-                    
-                    MovementStep step = pattern.movements.get(i);
-                    applyMovementStep(step);
-                    
-                    Thread.sleep(Math.max(50, Math.min(500, step.timeDelta)));
-                }
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
-        }).start();
+        int startIndex = ThreadLocalRandom.current().nextInt(Math.max(1, pattern.size() - 10));
+        int endIndex = Math.min(startIndex + 5 + ThreadLocalRandom.current().nextInt(10), pattern.size());
+        
+        PatternContext.motion(pattern, startIndex, endIndex, played);
+        query[PatternContext.SPRINT_RATIO] = (played[PatternContext.SPRINT_RATIO] + PatternContext.UNKNOWN) / 2;
+        query[PatternContext.HEADING_CHANGE] = (played[PatternContext.HEADING_CHANGE] + PatternContext.UNKNOWN) / 2;
+        
+        playStep(pattern, startIndex, endIndex);
     }
     
-    private void applyMovementStep(MovementStep step) {
+    // Applies one step and schedules the next after the step's recorded delay
+    private void playStep(MovementPattern pattern, int index, int endIndex) {
+        if (index >= endIndex || index >= pattern.size() || client.player == null) return;
+        
+        applyMovementStep(pattern, index);
+        
+        playback = scheduler.schedule(Math.max(50, Math.min(500, pattern.timeDelta(index))),
+            () -> playStep(pattern, index + 1, endIndex));
+    }
+    
+    private void applyMovementStep(MovementPattern pattern, int step) {
         if (client.player == null) return;
         
         // Apply movement with some randomization
@@ -132,24 +155,24 @@ public class MovementLearner {
         double noiseZ = (random.nextDouble() - 0.5) * 0.1;
         
         Vec3d velocity = new Vec3d(
-            step.deltaX * 5 + noiseX, // Scale up delta for velocity
+            pattern.deltaX(step) * 5 + noiseX, // Scale up delta for velocity
             0,
-            step.deltaZ * 5 + noiseZ
+            pattern.deltaZ(step) * 5 + noiseZ
         );
         
         // Apply speed variation based on learned sprinting
-        if (step.isSprinting && random.nextFloat() < 0.8f) {
+        if (pattern.isSprinting(step) && random.nextFloat() < 0.8f) {
             velocity = velocity.multiply(1.3);
         }
         
         client.player.setVelocity(velocity);
         
         // Apply rotation with smoothing
-        float currentYaw = client.player.getYaw();
-        float currentPitch = client.player.getPitch();
+        float currentYaw = outbound.getYaw();
+        float currentPitch = outbound.getPitch();
         
-        float targetYaw = step.yaw + (random.nextFloat() - 0.5f) * 10f;
-        float targetPitch = step.pitch + (random.nextFloat() - 0.5f) * 5f;
+        float targetYaw = pattern.yaw(step) + (random.nextFloat() - 0.5f) * 10f;
+        float targetPitch = pattern.pitch(step) + (random.nextFloat() - 0.5f) * 5f;
         
         // Smooth rotation
         float yawDiff = targetYaw - currentYaw;
@@ -158,74 +181,38 @@ public class MovementLearner {
         while (yawDiff > 180) yawDiff -= 360;
         while (yawDiff < -180) yawDiff += 360;
         
-        client.player.setYaw(currentYaw + yawDiff * 0.3f);
-        client.player.setPitch(currentPitch + pitchDiff * 0.3f);
+        outbound.rotate(currentYaw + yawDiff * 0.3f, currentPitch + pitchDiff * 0.3f);
         
         // Apply jumping
-        if (step.isJumping && client.player.isOnGround() && random.nextFloat() < 0.7f) {
+        if (pattern.isJumping(step) && client.player.isOnGround() && random.nextFloat() < 0.7f) {
             client.player.jump();
         }
     }
     
     private MovementPattern generateDefaultPattern() {
-        MovementPattern pattern = new MovementPattern();
+        StepRing steps = new StepRing(10);
         ThreadLocalRandom random = ThreadLocalRandom.current();
         
         // Generate a simple walking pattern
         for (int i = 0; i < 10; i++) {
-            MovementStep step = new MovementStep();
-            step.deltaX = (random.nextDouble() - 0.5) * 0.1;
-            step.deltaZ = (random.nextDouble() - 0.5) * 0.1;
-            step.yaw = random.nextFloat() * 360;
-            step.pitch = (random.nextFloat() - 0.5f) * 30;
-            step.timeDelta = 200 + random.nextInt(300);
-            step.isJumping = random.nextFloat() < 0.1f;
-            step.isSprinting = random.nextFloat() < 0.3f;
-            
-            pattern.movements.add(step);
+            steps.push((random.nextDouble() - 0.5) * 0.1, 0, (random.nextDouble() - 0.5) * 0.1,
+                random.nextFloat() * 360, (random.nextFloat() - 0.5f) * 30, 200 + random.nextInt(300),
+                random.nextFloat() < 0.1f, random.nextFloat() < 0.3f);
         }
         
-        return pattern;
-    }
-    
-    private void savePatterns() {
-        try {
-            dataFile.getParentFile().mkdirs();
-            try (FileWriter writer = new FileWriter(dataFile)) {
-                gson.toJson(learnedPatterns, writer);
-            }
-        } catch (IOException e) {
-            System.err.println("Failed to save movement patterns: " + e.getMessage());
-        }
-    }
-    
-    private void loadPatterns() {
-        if (!dataFile.exists()) return;
-        
-        try (FileReader reader = new FileReader(dataFile)) {
-            Type listType = new TypeToken<List<MovementPattern>>(){}.getType();
-            List<MovementPattern> loaded = gson.fromJson(reader, listType);
-            if (loaded != null) {
-                learnedPatterns.clear();
-                learnedPatterns.addAll(loaded);
-            }
-        } catch (IOException e) {
-            System.err.println("Failed to load movement patterns: " + e.getMessage());
-        }
+        return steps.freeze();
     }
     
     public int getPatternCount() {
-        return learnedPatterns.size();
+        return store.size();
     }
     
-    public static class MovementPattern {
-        public List<MovementStep> movements = new ArrayList<>();
+    // Flushes recordings the writer has not saved yet, on client shutdown
+    public void close() {
+        store.close();
     }
     
-    public static class MovementStep {
-        public double deltaX, deltaY, deltaZ;
-        public float yaw, pitch;
-        public boolean isJumping, isSprinting;
-        public long timeDelta;
+    public String getStatsSummary() {
+        return store.getStatsSummary();
     }
 }
\ No newline at end of file
@@ -0,0 +1,92 @@
+package org.pluginmakers.antiafkplusplus.client.ai;
+
+// A committed movement recording, one primitive array per step field. Values are fixed point:
+// position deltas in 1/1024 block, yaw wrapped to [-180, 180) and pitch in 1/100 degree, time
+// deltas in milliseconds. The arrays are shared with StepRing and PatternStore inside this
+// package and never written after construction.
+public final class MovementPattern {
+    public static final float POSITION_SCALE = 1024.0f;
+    public static final float ANGLE_SCALE = 100.0f;
+    public static final int FLAG_JUMPING = 1;
+    public static final int FLAG_SPRINTING = 2;
+
+    final short[] deltaX, deltaY, deltaZ;
+    final short[] yaw, pitch;
+    final short[] timeDelta;
+    final byte[] flags;
+
+    MovementPattern(short[] deltaX, short[] deltaY, short[] deltaZ, short[] yaw, short[] pitch, short[] timeDelta,
+                    byte[] flags) {
+        this.deltaX = deltaX;
+        this.deltaY = deltaY;
+        this.deltaZ = deltaZ;
+        this.yaw = yaw;
+        this.pitch = pitch;
+        this.timeDelta = timeDelta;
+        this.flags = flags;
+    }
+
+    public int size() {
+        return flags.length;
+    }
+
+    public double deltaX(int step) {
+        return deltaX[step] / POSITION_SCALE;
+    }
+
+    public double deltaY(int step) {
+        return deltaY[step] / POSITION_SCALE;
+    }
+
+    public double deltaZ(int step) {
+        return deltaZ[step] / POSITION_SCALE;
+    }
+
+    public float yaw(int step) {
+        return yaw[step] / ANGLE_SCALE;
+    }
+
+    public float pitch(int step) {
+        return pitch[step] / ANGLE_SCALE;
+    }
+
+    public int timeDelta(int step) {
+        return timeDelta[step];
+    }
+
+    public boolean isJumping(int step) {
+        return (flags[step] & FLAG_JUMPING) != 0;
+    }
+
+    public boolean isSprinting(int step) {
+        return (flags[step] & FLAG_SPRINTING) != 0;
+    }
+
+    static short position(double blocks) {
+        return clamp(Math.round(blocks * POSITION_SCALE));
+    }
+
+    static short angle(float degrees) {
+        return (short) Math.round(wrapDegrees(degrees) * ANGLE_SCALE);
+    }
+
+    static short millis(long millis) {
+        return clamp(millis);
+    }
+
+    static byte flags(boolean jumping, boolean sprinting) {
+        return (byte) ((jumping ? FLAG_JUMPING : 0) | (sprinting ? FLAG_SPRINTING : 0));
+    }
+
+    // Into [-180, 180), a rounded 180.00 would not fit the short otherwise
+    static float wrapDegrees(float degrees) {
+        float wrapped = degrees % 360.0f;
+        if (wrapped >= 180.0f) wrapped -= 360.0f;
+        if (wrapped < -180.0f) wrapped += 360.0f;
+        return Math.min(wrapped, 179.99f);
+    }
+
+    private static short clamp(long value) {
+        return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value));
+    }
+}
@@ -0,0 +1,107 @@
+package org.pluginmakers.antiafkplusplus.client.ai;
+
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.network.ClientPlayerEntity;
+import net.minecraft.util.math.MathHelper;
+import org.pluginmakers.antiafkplusplus.client.path.NavGrid;
+
+// Feature vector describing where a movement pattern was recorded and how it moves, each value
+// in [0, 1]. The terrain part comes from the nav grid around the player's feet: how far the
+// floor of each of the 8 neighbouring columns sits from the feet, and how many of them can be
+// walked onto with at most a one block step. The motion part comes from the pattern itself:
+// the share of sprinting steps and the average turn between steps. Patterns are matched by
+// weighted squared distance, terrain counting double.
+public class PatternContext {
+    public static final int DIMENSIONS = 4;
+    public static final int ROUGHNESS = 0;
+    public static final int FREE_DIRECTIONS = 1;
+    public static final int SPRINT_RATIO = 2;
+    public static final int HEADING_CHANGE = 3;
+    // Stands in for terrain that was never sampled, e.g. patterns saved by earlier versions
+    public static final float UNKNOWN = 0.5f;
+
+    private static final float[] WEIGHTS = {2.0f, 2.0f, 1.0f, 1.0f};
+    private static final int MAX_FLOOR_DY = 2;
+    private static final float FULL_HEADING_CHANGE = 45.0f; // Degrees per step that count as 1
+    private static final int[] NEIGHBOUR_X = {1, 1, 0, -1, -1, -1, 0, 1};
+    private static final int[] NEIGHBOUR_Z = {0, 1, 1, 1, 0, -1, -1, -1};
+
+    private final MinecraftClient client;
+    private final NavGrid navGrid;
+
+    public PatternContext(MinecraftClient client, NavGrid navGrid) {
+        this.client = client;
+        this.navGrid = navGrid;
+    }
+
+    // Writes ROUGHNESS and FREE_DIRECTIONS for the player's current position, false without a player
+    public boolean sampleTerrain(float[] out) {
+        ClientPlayerEntity player = client.player;
+        if (player == null) return false;
+
+        int x = MathHelper.floor(player.getX());
+        int y = MathHelper.floor(player.getY());
+        int z = MathHelper.floor(player.getZ());
+        float roughness = 0;
+        int free = 0;
+        for (int i = 0; i < NEIGHBOUR_X.length; i++) {
+            int dy = nearestFloor(x + NEIGHBOUR_X[i], y, z + NEIGHBOUR_Z[i]);
+            if (dy == Integer.MAX_VALUE) {
+                roughness += 1;
+                continue;
+            }
+            roughness += Math.abs(dy) / (float) MAX_FLOOR_DY;
+            if (Math.abs(dy) <= 1) free++;
+        }
+        out[ROUGHNESS] = roughness / NEIGHBOUR_X.length;
+        out[FREE_DIRECTIONS] = free / (float) NEIGHBOUR_X.length;
+        return true;
+    }
+
+    // Writes SPRINT_RATIO and HEADING_CHANGE of a pattern
+    public static void motion(MovementPattern pattern, float[] out) {
+        motion(pattern, 0, pattern.size(), out);
+    }
+
+    // Same for the steps from (inclusive) to to (exclusive) only, e.g. a segment that was played
+    public static void motion(MovementPattern pattern, int from, int to, float[] out) {
+        int steps = to - from;
+        if (steps <= 0) {
+            out[SPRINT_RATIO] = 0;
+            out[HEADING_CHANGE] = 0;
+            return;
+        }
+
+        int sprinting = 0;
+        float turned = 0;
+        for (int i = from; i < to; i++) {
+            if (pattern.isSprinting(i)) sprinting++;
+            if (i > from) {
+                turned += Math.abs(MathHelper.wrapDegrees(pattern.yaw(i) - pattern.yaw(i - 1)));
+            }
+        }
+        out[SPRINT_RATIO] = sprinting / (float) steps;
+        out[HEADING_CHANGE] = steps == 1 ? 0 : Math.min(1.0f, turned / (steps - 1) / FULL_HEADING_CHANGE);
+    }
+
+    // Weighted squared distance between a query and the vector starting at offset in a flat array
+    public static float distance(float[] query, float[] features, int offset) {
+        float sum = 0;
+        for (int d = 0; d < DIMENSIONS; d++) {
+            float delta = query[d] - features[offset + d];
+            sum += WEIGHTS[d] * delta * delta;
+        }
+        return sum;
+    }
+
+    // Height of the standable floor nearest y in a column, relative to y; MAX_VALUE when there is
+    // none within MAX_FLOOR_DY
+    private int nearestFloor(int x, int y, int z) {
+        if (navGrid.canStand(x, y, z)) return 0;
+        for (int dy = 1; dy <= MAX_FLOOR_DY; dy++) {
+            if (navGrid.canStand(x, y + dy, z)) return dy;
+            if (navGrid.canStand(x, y - dy, z)) return -dy;
+        }
+        return Integer.MAX_VALUE;
+    }
+}
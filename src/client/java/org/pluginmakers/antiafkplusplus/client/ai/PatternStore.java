@@ -0,0 +1,533 @@
+package org.pluginmakers.antiafkplusplus.client.ai;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Learned movement patterns on disk. Steps are fixed-width records in an append-only data file
+// that is memory mapped read-only; a small index file lists each pattern's offset and length and
+// is the only thing replaced, atomically, after appended records are on disk. Patterns are
+// decoded from the mapping one at a time when playback asks for them, so the library costs a
+// few bytes of heap per pattern. Loading, appending and compaction run on a writer thread;
+// appends within FLUSH_DELAY_MS go out in one write. Compaction copies the live records into a
+// data file of the next generation instead of rewriting the mapped one, which Windows would refuse.
+// Since version 2 the index also carries each pattern's PatternContext vector, one byte per
+// dimension, kept in memory as one flat float array that nearest() scans.
+public class PatternStore {
+    static final int MAGIC = 0x41415053; // "AAPS"
+    static final int VERSION = 2;
+    // dx, dy, dz, yaw delta, pitch delta, time delta as shorts in MovementPattern's fixed point,
+    // flags, one byte of padding
+    static final int STEP_BYTES = 14;
+
+    private static final int MAX_PATTERNS = 4096;
+    private static final int MAX_STEPS = Short.MAX_VALUE;
+    private static final int FULL_TURN = Math.round(360 * MovementPattern.ANGLE_SCALE);
+    private static final long FLUSH_DELAY_MS = 2000;
+    private static final long COMPACT_MIN_BYTES = 1 << 20;
+    private static final String BASE_NAME = "antiafkplusplus_movement";
+
+    private final File directory;
+    private final Path indexPath;
+    private final ScheduledThreadPoolExecutor writer = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "AntiAFK Pattern Writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ConcurrentLinkedQueue<PendingPattern> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+    // Replaced as a whole by the writer, read without locking by the client thread
+    private volatile Library library = Library.EMPTY;
+    // Off when files that failed to load could not be moved aside, so they are never overwritten
+    private volatile boolean writable = true;
+
+    // Writer thread only, except the volatile ones the stats line reads
+    private volatile long flushes = 0;
+    private volatile long flushedPatterns = 0;
+    private volatile long flushNanos = 0;
+    private volatile long compactions = 0;
+    private long reads = 0;
+    private long nearestQueries = 0;
+    private long nearestNanos = 0;
+    private float[] nearestDistances = new float[0];
+
+    public PatternStore(File directory) {
+        this.directory = directory;
+        this.indexPath = new File(directory, BASE_NAME + ".idx").toPath();
+        // close() flushes right away, a delayed flush left behind must not hold up shutdown
+        writer.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        writer.execute(this::load);
+    }
+
+    // Patterns appended since the last flush are not counted until they are on disk
+    public int size() {
+        return library.count;
+    }
+
+    // Client thread. Decodes one pattern from the mapping straight into its arrays
+    public MovementPattern read(int index) {
+        Library current = library;
+        if (index < 0 || index >= current.count) return null;
+        reads++;
+
+        return decode(current.data, current.offsets[index], current.stepCounts[index]);
+    }
+
+    // Client thread. Fills out with the indices of the out.length patterns whose context is
+    // closest to query, closest first, and returns how many were found
+    public int nearest(float[] query, int[] out) {
+        Library current = library;
+        if (out.length == 0) return 0;
+        long started = System.nanoTime();
+        if (nearestDistances.length < out.length) {
+            nearestDistances = new float[out.length];
+        }
+
+        // Insertion into a short sorted list, the scan itself is one pass over the flat array
+        float[] best = nearestDistances;
+        int found = 0;
+        for (int i = 0; i < current.count; i++) {
+            float distance = PatternContext.distance(query, current.features, i * PatternContext.DIMENSIONS);
+            if (found == out.length && distance >= best[found - 1]) continue;
+
+            int slot = found < out.length ? found++ : found - 1;
+            while (slot > 0 && best[slot - 1] > distance) {
+                best[slot] = best[slot - 1];
+                out[slot] = out[slot - 1];
+                slot--;
+            }
+            best[slot] = distance;
+            out[slot] = i;
+        }
+
+        nearestQueries++;
+        nearestNanos += System.nanoTime() - started;
+        return found;
+    }
+
+    // Client thread. Written by the writer within FLUSH_DELAY_MS, together with whatever else arrives
+    public void append(MovementPattern pattern, float[] features) {
+        if (pattern.size() == 0) return;
+
+        pending.add(new PendingPattern(pattern, features.clone()));
+        if (flushScheduled.compareAndSet(false, true)) {
+            writer.schedule(this::flush, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Writes anything still pending and waits for it, for client shutdown
+    public void close() {
+        writer.execute(this::flush);
+        writer.shutdown();
+        try {
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public String getStatsSummary() {
+        Library current = library;
+        long averageMicros = flushes == 0 ? 0 : flushNanos / flushes / 1000;
+        long nearestMicros = nearestQueries == 0 ? 0 : nearestNanos / nearestQueries / 1000;
+        return "pattern store: " + current.count + " patterns, " + current.liveBytes / 1024 + " KB live of "
+            + current.fileBytes / 1024 + " KB mapped, " + reads + " reads, " + nearestQueries + " nearest queries ("
+            + nearestMicros + "us avg), " + flushes + " flushes (" + flushedPatterns + " patterns, " + averageMicros
+            + "us avg), " + compactions + " compactions";
+    }
+
+    private void load() {
+        directory.mkdirs();
+        File json = new File(directory, BASE_NAME + ".json");
+        if (Files.exists(indexPath)) {
+            try {
+                library = readIndex();
+            } catch (Exception e) {
+                System.err.println("Failed to load movement patterns: " + e.getMessage());
+                library = Library.EMPTY;
+                // The next write would replace the index and reuse the data files, keep them instead
+                File[] files = directory.listFiles((dir, name) -> name.startsWith(BASE_NAME + ".") && name.endsWith(".dat"));
+                setAside(indexPath.toFile());
+                if (files != null) {
+                    for (File file : files) {
+                        setAside(file);
+                    }
+                }
+                return;
+            }
+            deleteStaleGenerations(library.generation);
+        } else if (json.exists()) {
+            try {
+                migrateJson(json);
+            } catch (Exception e) {
+                System.err.println("Failed to migrate movement patterns: " + e.getMessage());
+                library = Library.EMPTY;
+                // Once an index is written the migration is never tried again
+                setAside(json);
+            }
+        }
+    }
+
+    // Renames a file that failed to load so nothing writes over it; appends stop for the session
+    // when that is not possible
+    private void setAside(File file) {
+        File aside = new File(directory, file.getName() + "." + System.currentTimeMillis() + ".bad");
+        try {
+            Files.move(file.toPath(), aside.toPath());
+            System.err.println("Kept unreadable movement data " + file.getName() + " aside as " + aside.getName());
+        } catch (IOException e) {
+            writable = false;
+            System.err.println("Failed to keep " + file.getName() + " aside, recorded movement patterns will not be saved: "
+                + e.getMessage());
+        }
+    }
+
+    private Library readIndex() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexPath)))) {
+            if (in.readInt() != MAGIC) throw new IOException("not a pattern index");
+            int version = in.readShort();
+            if (version != 1 && version != VERSION) throw new IOException("unsupported pattern index version " + version);
+            if (in.readShort() != STEP_BYTES) throw new IOException("unexpected step size");
+
+            int generation = in.readInt();
+            int count = in.readInt();
+            int[] offsets = new int[count];
+            int[] stepCounts = new int[count];
+            float[] features = new float[count * PatternContext.DIMENSIONS];
+            long liveBytes = 0;
+            for (int i = 0; i < count; i++) {
+                offsets[i] = in.readInt();
+                stepCounts[i] = in.readShort() & 0xFFFF;
+                liveBytes += (long) stepCounts[i] * STEP_BYTES;
+                if (version >= 2) {
+                    for (int d = 0; d < PatternContext.DIMENSIONS; d++) {
+                        features[i * PatternContext.DIMENSIONS + d] = in.readUnsignedByte() / 255.0f;
+                    }
+                }
+            }
+
+            MappedByteBuffer data = map(dataPath(generation));
+            for (int i = 0; i < count; i++) {
+                if ((long) offsets[i] + (long) stepCounts[i] * STEP_BYTES > data.capacity()) {
+                    throw new IOException("pattern index points past the data file");
+                }
+            }
+
+            // Version 1 had no context, the motion part is recomputed and the next write saves it
+            if (version == 1) {
+                float[] vector = new float[PatternContext.DIMENSIONS];
+                for (int i = 0; i < count; i++) {
+                    unknownTerrain(decode(data, offsets[i], stepCounts[i]), vector);
+                    System.arraycopy(vector, 0, features, i * PatternContext.DIMENSIONS, PatternContext.DIMENSIONS);
+                }
+            }
+            return new Library(generation, count, offsets, stepCounts, features, data, liveBytes);
+        }
+    }
+
+    // Patterns saved by earlier versions as JSON move over once, the old file is kept aside
+    private void migrateJson(File json) throws IOException {
+        List<LegacyPattern> loaded;
+        try (FileReader reader = new FileReader(json)) {
+            Type listType = new TypeToken<List<LegacyPattern>>(){}.getType();
+            loaded = new Gson().fromJson(reader, listType);
+        }
+        if (loaded != null) {
+            List<PendingPattern> batch = new ArrayList<>();
+            for (LegacyPattern legacy : loaded) {
+                if (legacy == null || legacy.movements == null || legacy.movements.isEmpty()) continue;
+
+                StepRing ring = new StepRing(Math.min(MAX_STEPS, legacy.movements.size()));
+                for (LegacyStep step : legacy.movements) {
+                    ring.push(step.deltaX, step.deltaY, step.deltaZ, step.yaw, step.pitch, step.timeDelta,
+                        step.isJumping, step.isSprinting);
+                }
+                MovementPattern pattern = ring.freeze();
+                float[] features = new float[PatternContext.DIMENSIONS];
+                unknownTerrain(pattern, features);
+                batch.add(new PendingPattern(pattern, features));
+            }
+            // Written directly so a failure leaves the JSON file to be set aside, not renamed as done
+            if (!batch.isEmpty()) {
+                library = write(library, batch);
+            }
+        }
+        Files.move(json.toPath(), new File(directory, BASE_NAME + ".json.old").toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static void unknownTerrain(MovementPattern pattern, float[] features) {
+        features[PatternContext.ROUGHNESS] = PatternContext.UNKNOWN;
+        features[PatternContext.FREE_DIRECTIONS] = PatternContext.UNKNOWN;
+        PatternContext.motion(pattern, features);
+    }
+
+    // Writer thread
+    private void flush() {
+        flushScheduled.set(false);
+        List<PendingPattern> batch = new ArrayList<>();
+        PendingPattern next;
+        while ((next = pending.poll()) != null) {
+            batch.add(next);
+        }
+        if (batch.isEmpty()) return;
+        if (!writable) return;
+
+        long started = System.nanoTime();
+        try {
+            library = write(library, batch);
+            flushes++;
+            flushedPatterns += batch.size();
+        } catch (Exception e) {
+            System.err.println("Failed to save movement patterns: " + e.getMessage());
+        }
+        flushNanos += System.nanoTime() - started;
+    }
+
+    private Library write(Library current, List<PendingPattern> batch) throws IOException {
+        // Oldest patterns fall out of the index once the library is full
+        int total = Math.min(MAX_PATTERNS, current.count + batch.size());
+        int skipBatch = Math.max(0, batch.size() - total);
+        int keep = total - (batch.size() - skipBatch);
+        int dropped = current.count - keep;
+
+        long garbage = current.fileBytes - current.liveBytes;
+        for (int i = 0; i < dropped; i++) {
+            garbage += (long) current.stepCounts[i] * STEP_BYTES;
+        }
+        boolean compact = garbage > COMPACT_MIN_BYTES && garbage > current.liveBytes / 2;
+        int generation = compact ? current.generation + 1 : current.generation;
+        Path dataPath = dataPath(generation);
+
+        int[] offsets = new int[total];
+        int[] stepCounts = new int[total];
+        float[] features = new float[total * PatternContext.DIMENSIONS];
+        long liveBytes = 0;
+        try (FileChannel channel = FileChannel.open(dataPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            long position = compact ? 0 : channel.size();
+            if (compact) {
+                channel.truncate(0);
+            }
+
+            for (int i = 0; i < keep; i++) {
+                int source = dropped + i;
+                int length = current.stepCounts[source] * STEP_BYTES;
+                if (compact) {
+                    ByteBuffer slice = current.data.slice(current.offsets[source], length);
+                    while (slice.hasRemaining()) {
+                        position += channel.write(slice, position);
+                    }
+                    offsets[i] = (int) (position - length);
+                } else {
+                    offsets[i] = current.offsets[source];
+                }
+                stepCounts[i] = current.stepCounts[source];
+                System.arraycopy(current.features, source * PatternContext.DIMENSIONS, features,
+                    i * PatternContext.DIMENSIONS, PatternContext.DIMENSIONS);
+                liveBytes += length;
+            }
+
+            for (int i = skipBatch; i < batch.size(); i++) {
+                ByteBuffer records = encode(batch.get(i).pattern);
+                int slot = keep + i - skipBatch;
+                offsets[slot] = (int) position;
+                stepCounts[slot] = records.remaining() / STEP_BYTES;
+                System.arraycopy(batch.get(i).features, 0, features, slot * PatternContext.DIMENSIONS,
+                    PatternContext.DIMENSIONS);
+                liveBytes += records.remaining();
+                while (records.hasRemaining()) {
+                    position += channel.write(records, position);
+                }
+            }
+            // Records must be on disk before an index that points at them
+            channel.force(true);
+        }
+
+        writeIndex(generation, total, offsets, stepCounts, features);
+        Library updated = new Library(generation, total, offsets, stepCounts, features, map(dataPath), liveBytes);
+        if (compact) {
+            compactions++;
+            // Fails on Windows while the old generation is still mapped, load() retries next start
+            Files.deleteIfExists(dataPath(current.generation));
+        }
+        return updated;
+    }
+
+    private static MovementPattern decode(ByteBuffer data, int offset, int steps) {
+        short[] deltaX = new short[steps], deltaY = new short[steps], deltaZ = new short[steps];
+        short[] yaw = new short[steps], pitch = new short[steps], timeDelta = new short[steps];
+        byte[] flags = new byte[steps];
+        int lastYaw = 0, lastPitch = 0;
+        for (int i = 0; i < steps; i++) {
+            int record = offset + i * STEP_BYTES;
+            deltaX[i] = data.getShort(record);
+            deltaY[i] = data.getShort(record + 2);
+            deltaZ[i] = data.getShort(record + 4);
+            lastYaw = wrapAngle(lastYaw + data.getShort(record + 6));
+            lastPitch += data.getShort(record + 8);
+            yaw[i] = (short) lastYaw;
+            pitch[i] = (short) lastPitch;
+            timeDelta[i] = data.getShort(record + 10);
+            flags[i] = data.get(record + 12);
+        }
+        return new MovementPattern(deltaX, deltaY, deltaZ, yaw, pitch, timeDelta, flags);
+    }
+
+    // The pattern's values are already fixed point, only yaw and pitch become deltas
+    private static ByteBuffer encode(MovementPattern pattern) {
+        int steps = Math.min(MAX_STEPS, pattern.size());
+        ByteBuffer records = ByteBuffer.allocate(steps * STEP_BYTES).order(ByteOrder.BIG_ENDIAN);
+        int lastYaw = 0, lastPitch = 0;
+        for (int i = 0; i < steps; i++) {
+            records.putShort(pattern.deltaX[i]);
+            records.putShort(pattern.deltaY[i]);
+            records.putShort(pattern.deltaZ[i]);
+            records.putShort((short) wrapAngle(pattern.yaw[i] - lastYaw));
+            records.putShort((short) (pattern.pitch[i] - lastPitch));
+            records.putShort(pattern.timeDelta[i]);
+            records.put(pattern.flags[i]);
+            records.put((byte) 0);
+            lastYaw = pattern.yaw[i];
+            lastPitch = pattern.pitch[i];
+        }
+        records.flip();
+        return records;
+    }
+
+    // Into [-180, 180) degrees in fixed point, the turn between two steps is never more than half
+    private static int wrapAngle(int angle) {
+        angle %= FULL_TURN;
+        if (angle >= FULL_TURN / 2) angle -= FULL_TURN;
+        if (angle < -FULL_TURN / 2) angle += FULL_TURN;
+        return angle;
+    }
+
+    private void writeIndex(int generation, int count, int[] offsets, int[] stepCounts, float[] features)
+            throws IOException {
+        Path temp = new File(directory, BASE_NAME + ".idx.tmp").toPath();
+        int entryBytes = 6 + PatternContext.DIMENSIONS;
+        ByteBuffer index = ByteBuffer.allocate(16 + count * entryBytes).order(ByteOrder.BIG_ENDIAN);
+        index.putInt(MAGIC);
+        index.putShort((short) VERSION);
+        index.putShort((short) STEP_BYTES);
+        index.putInt(generation);
+        index.putInt(count);
+        for (int i = 0; i < count; i++) {
+            index.putInt(offsets[i]);
+            index.putShort((short) stepCounts[i]);
+            for (int d = 0; d < PatternContext.DIMENSIONS; d++) {
+                float value = features[i * PatternContext.DIMENSIONS + d];
+                index.put((byte) Math.round(Math.max(0, Math.min(1, value)) * 255));
+            }
+        }
+        index.flip();
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (index.hasRemaining()) {
+                channel.write(index);
+            }
+            // Without this the rename can reach the disk before the contents and leave an empty index
+            channel.force(true);
+        }
+        try {
+            Files.move(temp, indexPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, indexPath, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private void deleteStaleGenerations(int generation) {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(BASE_NAME + ".") && name.endsWith(".dat"));
+        if (files == null) return;
+
+        String current = dataPath(generation).getFileName().toString();
+        for (File file : files) {
+            if (!file.getName().equals(current) && !file.delete()) {
+                System.err.println("Failed to delete old movement data " + file.getName());
+            }
+        }
+    }
+
+    private Path dataPath(int generation) {
+        return new File(directory, BASE_NAME + "." + generation + ".dat").toPath();
+    }
+
+    private static MappedByteBuffer map(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    // Shape of the JSON library earlier versions wrote, read once by migrateJson()
+    private static class LegacyPattern {
+        List<LegacyStep> movements;
+    }
+
+    private static class LegacyStep {
+        double deltaX, deltaY, deltaZ;
+        float yaw, pitch;
+        boolean isJumping, isSprinting;
+        long timeDelta;
+    }
+
+    private static final class PendingPattern {
+        final MovementPattern pattern;
+        final float[] features;
+
+        PendingPattern(MovementPattern pattern, float[] features) {
+            this.pattern = pattern;
+            this.features = features;
+        }
+    }
+
+    // One consistent view of index and data, never modified after it is published
+    private static final class Library {
+        static final Library EMPTY = new Library(0, 0, new int[0], new int[0], new float[0], null, 0);
+
+        final int generation;
+        final int count;
+        final int[] offsets;
+        final int[] stepCounts;
+        final float[] features; // PatternContext.DIMENSIONS per pattern, in index order
+        final MappedByteBuffer data;
+        final long liveBytes;
+        final long fileBytes;
+
+        Library(int generation, int count, int[] offsets, int[] stepCounts, float[] features, MappedByteBuffer data,
+                long liveBytes) {
+            this.generation = generation;
+            this.count = count;
+            this.offsets = offsets;
+            this.stepCounts = stepCounts;
+            this.features = features;
+            this.data = data;
+            this.liveBytes = liveBytes;
+            this.fileBytes = data == null ? 0 : data.capacity();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package org.pluginmakers.antiafkplusplus.client.ai;
+
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.network.ClientPlayerEntity;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.mob.HostileEntity;
+import net.minecraft.item.ItemStack;
+import net.minecraft.util.math.Box;
+import net.minecraft.util.math.Vec3d;
+
+import java.util.List;
+
+// Everything the AI reads about the player and nearby hostiles, captured on the manager's
+// cadence so AICore and ActionExecutor don't each query the world themselves. The player part
+// is cheap and taken every tick; the hostile scan is an entity query and runs less often.
+public class PerceptionSnapshot {
+    public static final double HOSTILE_RADIUS = 12.0;
+
+    private final MinecraftClient client;
+
+    private HostileEntity[] hostiles = new HostileEntity[16];
+    private double[] hostileDistanceSq = new double[16];
+    private int hostileCount = 0;
+    private long hostileSignature = 0;
+
+    public boolean valid = false;
+    public double x, y, z;
+    public double velocityX, velocityY, velocityZ;
+    public boolean onGround;
+    public float health, maxHealth;
+    public int foodLevel;
+    public int selectedSlot;
+    public ItemStack heldStack = ItemStack.EMPTY;
+
+    public PerceptionSnapshot(MinecraftClient client) {
+        this.client = client;
+    }
+
+    public void updatePlayer() {
+        ClientPlayerEntity player = client.player;
+        if (player == null || client.world == null) {
+            valid = false;
+            clearHostiles();
+            return;
+        }
+
+        Vec3d pos = player.getPos();
+        x = pos.x;
+        y = pos.y;
+        z = pos.z;
+
+        Vec3d velocity = player.getVelocity();
+        velocityX = velocity.x;
+        velocityY = velocity.y;
+        velocityZ = velocity.z;
+
+        onGround = player.isOnGround();
+        health = player.getHealth();
+        maxHealth = player.getMaxHealth();
+        foodLevel = player.getHungerManager().getFoodLevel();
+        selectedSlot = player.getInventory().getSelectedSlot();
+        heldStack = player.getMainHandStack();
+        valid = true;
+    }
+
+    public void updateHostiles() {
+        ClientPlayerEntity player = client.player;
+        if (player == null || client.world == null) {
+            clearHostiles();
+            return;
+        }
+
+        clearHostiles();
+        Box area = new Box(x - HOSTILE_RADIUS, y - HOSTILE_RADIUS, z - HOSTILE_RADIUS,
+            x + HOSTILE_RADIUS, y + HOSTILE_RADIUS, z + HOSTILE_RADIUS);
+        List<HostileEntity> found = client.world.getEntitiesByClass(HostileEntity.class, area, Entity::isAlive);
+        for (int i = 0; i < found.size(); i++) {
+            HostileEntity entity = found.get(i);
+            insertHostile(entity, player.squaredDistanceTo(entity));
+            // Order independent, so only entities coming or going change it
+            hostileSignature += mixId(entity.getId());
+        }
+        hostileSignature += hostileCount;
+    }
+
+    public int getHostileCount() {
+        return hostileCount;
+    }
+
+    // Hostiles are sorted nearest first
+    public HostileEntity getHostile(int index) {
+        return hostiles[index];
+    }
+
+    public double getHostileDistanceSq(int index) {
+        return hostileDistanceSq[index];
+    }
+
+    // Identifies the set of nearby hostiles, equal values mean the same entities are around
+    public long getHostileSignature() {
+        return hostileSignature;
+    }
+
+    public HostileEntity nearestHostile() {
+        return hostileCount > 0 ? hostiles[0] : null;
+    }
+
+    public double nearestHostileDistanceSq() {
+        return hostileCount > 0 ? hostileDistanceSq[0] : Double.MAX_VALUE;
+    }
+
+    private void insertHostile(HostileEntity entity, double distanceSq) {
+        if (hostileCount == hostiles.length) {
+            hostiles = java.util.Arrays.copyOf(hostiles, hostiles.length * 2);
+            hostileDistanceSq = java.util.Arrays.copyOf(hostileDistanceSq, hostileDistanceSq.length * 2);
+        }
+
+        int i = hostileCount++;
+        while (i > 0 && hostileDistanceSq[i - 1] > distanceSq) {
+            hostiles[i] = hostiles[i - 1];
+            hostileDistanceSq[i] = hostileDistanceSq[i - 1];
+            i--;
+        }
+        hostiles[i] = entity;
+        hostileDistanceSq[i] = distanceSq;
+    }
+
+    private void clearHostiles() {
+        for (int i = 0; i < hostileCount; i++) {
+            hostiles[i] = null;
+        }
+        hostileCount = 0;
+        hostileSignature = 0;
+    }
+
+    private static long mixId(int id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+}
@@ -0,0 +1,110 @@
+package org.pluginmakers.antiafkplusplus.client.ai;
+
+// Recording buffer for movement steps: one primitive array per field in MovementPattern's fixed
+// point plus the terrain sampled at the step, 15 bytes a step, and nothing allocated while
+// recording. Keeps the latest steps; once full, a new step overwrites the oldest one together
+// with its terrain.
+public class StepRing {
+    private static final byte NO_TERRAIN = (byte) 255;
+
+    private final short[] deltaX, deltaY, deltaZ;
+    private final short[] yaw, pitch;
+    private final short[] timeDelta;
+    private final byte[] flags;
+    private final byte[] roughness, freeDirections; // PatternContext values in 1/254, NO_TERRAIN if unsampled
+    private int head = 0; // Slot the next step goes into
+    private int size = 0;
+
+    public StepRing(int capacity) {
+        deltaX = new short[capacity];
+        deltaY = new short[capacity];
+        deltaZ = new short[capacity];
+        yaw = new short[capacity];
+        pitch = new short[capacity];
+        timeDelta = new short[capacity];
+        flags = new byte[capacity];
+        roughness = new byte[capacity];
+        freeDirections = new byte[capacity];
+    }
+
+    public void push(double dx, double dy, double dz, float yawDegrees, float pitchDegrees, long millis,
+                     boolean jumping, boolean sprinting) {
+        deltaX[head] = MovementPattern.position(dx);
+        deltaY[head] = MovementPattern.position(dy);
+        deltaZ[head] = MovementPattern.position(dz);
+        yaw[head] = MovementPattern.angle(yawDegrees);
+        pitch[head] = MovementPattern.angle(pitchDegrees);
+        timeDelta[head] = MovementPattern.millis(millis);
+        flags[head] = MovementPattern.flags(jumping, sprinting);
+        roughness[head] = NO_TERRAIN;
+        freeDirections[head] = NO_TERRAIN;
+
+        head = head + 1 == flags.length ? 0 : head + 1;
+        if (size < flags.length) size++;
+    }
+
+    // Attaches a terrain sample to the step pushed last
+    public void setTerrain(float roughnessValue, float freeDirectionsValue) {
+        if (size == 0) return;
+        int last = head == 0 ? flags.length - 1 : head - 1;
+        roughness[last] = quantize(roughnessValue);
+        freeDirections[last] = quantize(freeDirectionsValue);
+    }
+
+    // Writes ROUGHNESS and FREE_DIRECTIONS averaged over the steps still held, the ones freeze()
+    // returns; UNKNOWN when none of them was sampled
+    public void averageTerrain(float[] out) {
+        int start = start();
+        int sampled = 0;
+        float roughnessSum = 0, freeDirectionsSum = 0;
+        for (int i = 0; i < size; i++) {
+            int slot = start + i < flags.length ? start + i : start + i - flags.length;
+            if (roughness[slot] == NO_TERRAIN) continue;
+            roughnessSum += (roughness[slot] & 0xFF) / 254.0f;
+            freeDirectionsSum += (freeDirections[slot] & 0xFF) / 254.0f;
+            sampled++;
+        }
+        out[PatternContext.ROUGHNESS] = sampled == 0 ? PatternContext.UNKNOWN : roughnessSum / sampled;
+        out[PatternContext.FREE_DIRECTIONS] = sampled == 0 ? PatternContext.UNKNOWN : freeDirectionsSum / sampled;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    // Copies the steps out oldest first into arrays of exactly size() entries
+    public MovementPattern freeze() {
+        int start = start();
+        return new MovementPattern(unroll(deltaX, start), unroll(deltaY, start), unroll(deltaZ, start),
+            unroll(yaw, start), unroll(pitch, start), unroll(timeDelta, start), unroll(flags, start));
+    }
+
+    private int start() {
+        return head - size < 0 ? head - size + flags.length : head - size;
+    }
+
+    private static byte quantize(float value) {
+        return (byte) Math.round(Math.max(0, Math.min(1, value)) * 254);
+    }
+
+    private short[] unroll(short[] ring, int start) {
+        short[] out = new short[size];
+        int first = Math.min(size, ring.length - start);
+        System.arraycopy(ring, start, out, 0, first);
+        System.arraycopy(ring, 0, out, first, size - first);
+        return out;
+    }
+
+    private byte[] unroll(byte[] ring, int start) {
+        byte[] out = new byte[size];
+        int first = Math.min(size, ring.length - start);
+        System.arraycopy(ring, start, out, 0, first);
+        System.arraycopy(ring, 0, out, first, size - first);
+        return out;
+    }
+}
@@ -0,0 +1,153 @@
+package org.pluginmakers.antiafkplusplus.client.ai;
+
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.Heightmap;
+import net.minecraft.world.World;
+import org.pluginmakers.antiafkplusplus.client.path.NavGrid;
+import org.pluginmakers.antiafkplusplus.client.world.BlockClassifier;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// Picks standing positions to walk to. A sampled column is resolved with the nav grid's per
+// column floor masks, the floor nearest the reference height in three section lookups, and
+// with the client heightmap when the column's ground is further up or down than that, e.g.
+// hills seen from the surface. Every attempt is a fixed number of lookups; a few attempts are
+// made before giving up.
+public class TargetSampler {
+    public static final int AVOID_HAZARDS = 1;
+    public static final int INSIDE_BASE = 2;
+
+    private static final int MAX_ATTEMPTS = 8;
+    private static final int MAX_FLOOR_DY = 8; // Floor search window around the reference height
+    private static final int MAX_SURFACE_DY = 16; // Heightmap ground further away than this is out of reach
+    private static final int BASE_Y_TOLERANCE = 3;
+
+    private final MinecraftClient client;
+    private final NavGrid navGrid;
+    private final BasePerimeter basePerimeter;
+
+    private long samples = 0;
+    private long attempts = 0;
+    private long misses = 0;
+    private long hazardRejects = 0;
+    private long baseRejects = 0;
+    private long fromHeightmap = 0;
+
+    public TargetSampler(MinecraftClient client, NavGrid navGrid, BasePerimeter basePerimeter) {
+        this.client = client;
+        this.navGrid = navGrid;
+        this.basePerimeter = basePerimeter;
+    }
+
+    // Standing position between minRange and maxRange blocks from center on each axis, false when
+    // every attempt missed. INSIDE_BASE samples the recorded base bounds instead of the range when
+    // the two do not overlap, and is ignored while no base is recorded
+    public boolean sample(BlockPos center, int minRange, int maxRange, int filters, BlockPos.Mutable out) {
+        World world = client.world;
+        if (world == null) return false;
+        samples++;
+
+        BlockPos min = basePerimeter.getMinCorner();
+        BlockPos max = basePerimeter.getMaxCorner();
+        boolean insideBase = (filters & INSIDE_BASE) != 0 && min != null && max != null;
+
+        int minX = center.getX() - maxRange, maxX = center.getX() + maxRange;
+        int minZ = center.getZ() - maxRange, maxZ = center.getZ() + maxRange;
+        int referenceY = center.getY();
+        if (insideBase) {
+            if (minX > max.getX() || maxX < min.getX() || minZ > max.getZ() || maxZ < min.getZ()) {
+                minX = min.getX();
+                maxX = max.getX();
+                minZ = min.getZ();
+                maxZ = max.getZ();
+            } else {
+                minX = Math.max(minX, min.getX());
+                maxX = Math.min(maxX, max.getX());
+                minZ = Math.max(minZ, min.getZ());
+                maxZ = Math.min(maxZ, max.getZ());
+            }
+            referenceY = Math.max(min.getY(), Math.min(max.getY(), referenceY));
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            attempts++;
+            int x = minX + random.nextInt(maxX - minX + 1);
+            int z = minZ + random.nextInt(maxZ - minZ + 1);
+
+            // Too close on both axes, the player would barely move
+            if (!insideBase && Math.abs(x - center.getX()) < minRange && Math.abs(z - center.getZ()) < minRange) {
+                continue;
+            }
+
+            int y = findFloor(world, x, referenceY, z);
+            if (y == Integer.MIN_VALUE) continue;
+
+            if (insideBase && (y < min.getY() - BASE_Y_TOLERANCE || y > max.getY() + BASE_Y_TOLERANCE)) {
+                baseRejects++;
+                continue;
+            }
+            if ((filters & AVOID_HAZARDS) != 0 && nearHazard(x, y, z)) {
+                hazardRejects++;
+                continue;
+            }
+
+            out.set(x, y, z);
+            return true;
+        }
+        misses++;
+        return false;
+    }
+
+    public String getStatsSummary() {
+        double averageAttempts = samples == 0 ? 0 : (double) attempts / samples;
+        return "targets: " + samples + " sampled, " + String.format("%.1f", averageAttempts) + " attempts avg, "
+            + misses + " missed, " + fromHeightmap + " from heightmap, rejected " + hazardRejects + " near hazards / "
+            + baseRejects + " outside base";
+    }
+
+    private int findFloor(World world, int x, int y, int z) {
+        int floor = nearestFloor(x, y, z);
+        if (floor != Integer.MIN_VALUE) return floor;
+
+        // First free block above the highest solid or liquid one, ignoring leaves
+        int surface = world.getTopY(Heightmap.Type.MOTION_BLOCKING_NO_LEAVES, x, z);
+        if (Math.abs(surface - y) <= MAX_SURFACE_DY && navGrid.canStand(x, surface, z)) {
+            fromHeightmap++;
+            return surface;
+        }
+        return Integer.MIN_VALUE;
+    }
+
+    // Standing height in the column closest to y, within MAX_FLOOR_DY, from three sections' masks
+    private int nearestFloor(int x, int y, int z) {
+        int sectionY = y >> 4;
+        long mask = navGrid.columnFloors(x, sectionY - 1, z)
+            | (long) navGrid.columnFloors(x, sectionY, z) << 16
+            | (long) navGrid.columnFloors(x, sectionY + 1, z) << 32;
+        int offset = y - ((sectionY - 1) << 4);
+
+        long window = mask & ((1L << (offset + MAX_FLOOR_DY + 1)) - 1) & -(1L << (offset - MAX_FLOOR_DY));
+        if (window == 0) return Integer.MIN_VALUE;
+
+        long above = window >>> offset;
+        long below = window & ((1L << offset) - 1);
+        int up = above == 0 ? Integer.MAX_VALUE : Long.numberOfTrailingZeros(above);
+        int down = below == 0 ? Integer.MAX_VALUE : offset - (63 - Long.numberOfLeadingZeros(below));
+        return up <= down ? y + up : y - down;
+    }
+
+    // Lava, fire and the like next to the spot or right under the neighbouring floors
+    private boolean nearHazard(int x, int y, int z) {
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dz = -1; dz <= 1; dz++) {
+                if ((navGrid.flags(x + dx, y, z + dz) & BlockClassifier.HAZARD) != 0
+                    || (navGrid.flags(x + dx, y - 1, z + dz) & BlockClassifier.HAZARD) != 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
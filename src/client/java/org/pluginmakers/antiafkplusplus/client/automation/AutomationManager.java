@@ -5,80 +5,86 @@ import net.minecraft.block.BlockState;
 import net.minecraft.block.FurnaceBlock;
 import net.minecraft.item.ItemStack;
 import net.minecraft.item.Items;
-import net.minecraft.screen.FurnaceScreenHandler;
+import net.minecraft.screen.AbstractFurnaceScreenHandler;
+import net.minecraft.screen.GenericContainerScreenHandler;
+import net.minecraft.screen.ScreenHandler;
 import net.minecraft.screen.slot.SlotActionType;
 import net.minecraft.util.math.BlockPos;
+import org.pluginmakers.antiafkplusplus.client.scheduler.TickScheduler;
+import org.pluginmakers.antiafkplusplus.client.world.PoiRegistry;
+import org.pluginmakers.antiafkplusplus.client.world.SpatialQueryService;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ThreadLocalRandom;
 
 public class AutomationManager {
     private final MinecraftClient client;
+    private final SpatialQueryService spatialQuery;
+    private final TickScheduler scheduler;
     private final List<BlockPos> trackedFurnaces = new ArrayList<>();
-    private long lastFurnaceCheck = 0;
-    private static final int FURNACE_CHECK_INTERVAL = 30000; // Check every 30 seconds for more natural behavior
-    
-    public AutomationManager(MinecraftClient client) {
+    private final ContainerSessionEngine containerSessions;
+    // At most one pending check per furnace and one pending chest trip
+    private final Set<BlockPos> scheduledFurnaceChecks = new HashSet<>();
+    private TickScheduler.Task chestTrip;
+    private boolean needsSmeltables = false;
+    
+    public AutomationManager(MinecraftClient client, SpatialQueryService spatialQuery, TickScheduler scheduler,
+                             ContainerSessionEngine containerSessions) {
         this.client = client;
+        this.spatialQuery = spatialQuery;
+        this.scheduler = scheduler;
+        this.containerSessions = containerSessions;
     }
     
     public void update() {
         if (client.player == null || client.world == null) return;
         
-        long currentTime = System.currentTimeMillis();
-        
-        if (currentTime - lastFurnaceCheck > FURNACE_CHECK_INTERVAL) {
-            checkFurnaces();
-            lastFurnaceCheck = currentTime;
+        // A furnace visit found nothing to smelt, fetch some once the container is closed
+        if (needsSmeltables && !containerSessions.isBusy()) {
+            needsSmeltables = false;
+            checkNearbyChestsForSmeltables();
         }
-        
-        handleScreenInteractions();
     }
     
-    private void checkFurnaces() {
+    // One round over the furnaces in range, the manager runs it every furnaceCheckInterval seconds
+    public void checkFurnaces() {
         if (client.world == null || client.player == null) return;
         
         BlockPos playerPos = client.player.getBlockPos();
         
-        for (int x = -16; x <= 16; x++) {
-            for (int y = -4; y <= 4; y++) {
-                for (int z = -16; z <= 16; z++) {
-                    BlockPos pos = playerPos.add(x, y, z);
-                    BlockState state = client.world.getBlockState(pos);
-                    
-                    if (state.getBlock() instanceof FurnaceBlock) {
-                        if (!trackedFurnaces.contains(pos)) {
-                            trackedFurnaces.add(pos);
-                        }
-                        
-                        if (state.get(FurnaceBlock.LIT)) {
-                            scheduleFurnaceCheck(pos);
-                        }
-                    }
-                }
+        for (BlockPos pos : spatialQuery.findWithin(SpatialQueryService.Caller.AUTOMATION_FURNACE,
+                PoiRegistry.PoiType.FURNACE, playerPos, 16, 4)) {
+            BlockState state = client.world.getBlockState(pos);
+            
+            if (!trackedFurnaces.contains(pos)) {
+                trackedFurnaces.add(pos);
+            }
+            
+            if (state.get(FurnaceBlock.LIT)) {
+                scheduleFurnaceCheck(pos);
             }
         }
     }
     
     private void scheduleFurnaceCheck(BlockPos furnacePos) {
-        new Thread(() -> {
-            try {
-                Thread.sleep(60000 + ThreadLocalRandom.current().nextInt(60000)); // Wait 1-2 minutes
+        if (!scheduledFurnaceChecks.add(furnacePos)) return; // Already waiting on this furnace
+        
+        scheduler.schedule(60000 + ThreadLocalRandom.current().nextInt(60000), () -> { // Wait 1-2 minutes
+            scheduledFurnaceChecks.remove(furnacePos);
+            
+            if (client.player != null && client.world != null) {
+                double distance = client.player.getPos().distanceTo(
+                    net.minecraft.util.math.Vec3d.ofCenter(furnacePos)
+                );
                 
-                if (client.player != null && client.world != null) {
-                    double distance = client.player.getPos().distanceTo(
-                        net.minecraft.util.math.Vec3d.ofCenter(furnacePos)
-                    );
-                    
-                    if (distance < 32) {
-                        checkSpecificFurnace(furnacePos);
-                    }
+                if (distance < 32) {
+                    checkSpecificFurnace(furnacePos);
                 }
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
             }
-        }).start();
+        });
     }
     
     private void checkSpecificFurnace(BlockPos pos) {
@@ -99,189 +105,114 @@ public class AutomationManager {
     }
     
     private void interactWithFurnace(BlockPos pos) {
-        if (client.interactionManager == null || client.player == null) return;
-        
-        net.minecraft.util.hit.BlockHitResult hitResult = new net.minecraft.util.hit.BlockHitResult(
-            net.minecraft.util.math.Vec3d.ofCenter(pos),
-            net.minecraft.util.math.Direction.UP,
-            pos,
-            false
-        );
-        
-        client.interactionManager.interactBlock(
-            client.player,
-            net.minecraft.util.Hand.MAIN_HAND,
-            hitResult
-        );
+        visitFurnace(pos);
     }
     
-    private void handleScreenInteractions() {
-        if (client.currentScreen == null || client.player == null) return;
-        
-        if (client.player.currentScreenHandler instanceof FurnaceScreenHandler furnaceHandler) {
-            handleFurnaceScreen(furnaceHandler);
-        }
+    // Opens the furnace and tops it up once its contents have synced
+    public boolean visitFurnace(BlockPos pos) {
+        return containerSessions.begin(pos, this::planFurnaceVisit);
     }
     
-    private void handleFurnaceScreen(FurnaceScreenHandler handler) {
-        ItemStack outputStack = handler.getSlot(2).getStack();
+    private void planFurnaceVisit(ScreenHandler screenHandler, ContainerSessionEngine.ClickPlan plan) {
+        if (!(screenHandler instanceof AbstractFurnaceScreenHandler handler)) return;
         
+        ItemStack outputStack = handler.getSlot(2).getStack();
         if (!outputStack.isEmpty()) {
-            takeFurnaceOutput(handler);
+            planTakeFurnaceOutput(plan);
         }
         
-        addFurnaceInputs(handler);
-        scheduleFurnaceScreenClose();
+        planFurnaceInputs(handler, plan);
     }
     
-    private void takeFurnaceOutput(FurnaceScreenHandler handler) {
-        if (client.interactionManager == null) return;
-        
-        client.interactionManager.clickSlot(
-            handler.syncId,
-            2,
-            0,
-            SlotActionType.QUICK_MOVE,
-            client.player
-        );
+    private void planTakeFurnaceOutput(ContainerSessionEngine.ClickPlan plan) {
+        plan.add(2, 0, SlotActionType.QUICK_MOVE);
     }
     
-    private void addFurnaceInputs(FurnaceScreenHandler handler) {
-        if (client.interactionManager == null || client.player == null) return;
-        
+    private void planFurnaceInputs(AbstractFurnaceScreenHandler handler, ContainerSessionEngine.ClickPlan plan) {
         ItemStack fuelStack = handler.getSlot(1).getStack();
         if (fuelStack.isEmpty() || fuelStack.getCount() < 8) {
-            addFuelToFurnace(handler);
+            planAddFuel(handler, plan);
         }
         
         ItemStack inputStack = handler.getSlot(0).getStack();
         if (inputStack.isEmpty() || inputStack.getCount() < 8) {
-            addSmeltableItems(handler);
+            planAddSmeltables(handler, plan);
         }
     }
     
-    private void addFuelToFurnace(FurnaceScreenHandler handler) {
-        if (client.interactionManager == null || client.player == null) return;
-        
+    private void planAddFuel(AbstractFurnaceScreenHandler handler, ContainerSessionEngine.ClickPlan plan) {
         for (int i = 3; i < handler.slots.size(); i++) {
             ItemStack stack = handler.getSlot(i).getStack();
             if (isFuel(stack)) {
-                client.interactionManager.clickSlot(handler.syncId, i, 0, SlotActionType.PICKUP, client.player);
-                client.interactionManager.clickSlot(handler.syncId, 1, 0, SlotActionType.PICKUP, client.player);
+                plan.add(i, 0, SlotActionType.PICKUP);
+                plan.add(1, 0, SlotActionType.PICKUP);
                 break;
             }
         }
     }
     
-    private void addSmeltableItems(FurnaceScreenHandler handler) {
-        if (client.interactionManager == null || client.player == null) return;
-        
+    private void planAddSmeltables(AbstractFurnaceScreenHandler handler, ContainerSessionEngine.ClickPlan plan) {
         // First check player inventory
         for (int i = 3; i < handler.slots.size(); i++) {
             ItemStack stack = handler.getSlot(i).getStack();
             if (isSmeltable(stack)) {
-                client.interactionManager.clickSlot(handler.syncId, i, 0, SlotActionType.PICKUP, client.player);
-                client.interactionManager.clickSlot(handler.syncId, 0, 0, SlotActionType.PICKUP, client.player);
+                plan.add(i, 0, SlotActionType.PICKUP);
+                plan.add(0, 0, SlotActionType.PICKUP);
                 return;
             }
         }
         
-        // If no smeltable items in inventory, check nearby chests
-        checkNearbyChestsForSmeltables();
+        // If no smeltable items in inventory, check nearby chests once this visit is over
+        needsSmeltables = true;
     }
     
     private void checkNearbyChestsForSmeltables() {
         if (client.world == null || client.player == null) return;
         
         BlockPos playerPos = client.player.getBlockPos();
+        var basePerimeter = org.pluginmakers.antiafkplusplus.client.AntiAFKManager.getInstance().getBasePerimeter();
         
-        for (int x = -8; x <= 8; x++) {
-            for (int y = -3; y <= 3; y++) {
-                for (int z = -8; z <= 8; z++) {
-                    BlockPos pos = playerPos.add(x, y, z);
-                    BlockState state = client.world.getBlockState(pos);
-                    
-                    if (state.getBlock().toString().toLowerCase().contains("chest")) {
-                        var basePerimeter = org.pluginmakers.antiafkplusplus.client.AntiAFKManager.getInstance().getBasePerimeter();
-                        if (basePerimeter.canInteractWithChest(pos)) {
-                            scheduleChestInteractionForSmelting(pos);
-                            return;
-                        }
-                    }
-                }
-            }
+        BlockPos chestPos = spatialQuery.findNearest(SpatialQueryService.Caller.AUTOMATION_CHEST,
+            PoiRegistry.PoiType.CHEST, playerPos, 8, 3, basePerimeter::canInteractWithChest);
+        if (chestPos != null && (chestTrip == null || !chestTrip.isActive())) {
+            scheduleChestInteractionForSmelting(chestPos);
         }
     }
     
     private void scheduleChestInteractionForSmelting(BlockPos chestPos) {
-        new Thread(() -> {
-            try {
-                Thread.sleep(1000);
-                
-                if (client.player != null && client.world != null) {
-                    double distance = client.player.getPos().distanceTo(
-                        net.minecraft.util.math.Vec3d.ofCenter(chestPos)
-                    );
-                    
-                    if (distance <= 6.0) {
-                        // Move closer to chest if needed
-                        if (distance > 4.0) {
-                            // Simple pathfinding to chest
-                            net.minecraft.util.math.Vec3d direction = 
-                                net.minecraft.util.math.Vec3d.ofCenter(chestPos)
-                                .subtract(client.player.getPos()).normalize();
-                            client.player.setVelocity(direction.multiply(0.2));
-                            Thread.sleep(2000);
-                        }
-                        
-                        // Interact with chest
-                        net.minecraft.util.hit.BlockHitResult hitResult = 
-                            new net.minecraft.util.hit.BlockHitResult(
-                                net.minecraft.util.math.Vec3d.ofCenter(chestPos),
-                                net.minecraft.util.math.Direction.UP,
-                                chestPos,
-                                false
-                            );
-                        
-                        client.interactionManager.interactBlock(
-                            client.player,
-                            net.minecraft.util.Hand.MAIN_HAND,
-                            hitResult
-                        );
-                        
-                        Thread.sleep(1500);
-                        
-                        // Take smelting materials from chest
-                        takeSmeltingMaterialsFromChest();
-                        
-                        Thread.sleep(1000);
-                        
-                        if (client.currentScreen != null) {
-                            client.player.closeHandledScreen();
-                        }
-                    }
-                }
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
+        chestTrip = scheduler.schedule(1000, () -> {
+            if (client.player == null || client.world == null) return;
+            
+            double distance = client.player.getPos().distanceTo(
+                net.minecraft.util.math.Vec3d.ofCenter(chestPos)
+            );
+            if (distance > 6.0) return;
+            
+            // Move closer to chest if needed
+            if (distance > 4.0) {
+                // Simple pathfinding to chest
+                net.minecraft.util.math.Vec3d direction = 
+                    net.minecraft.util.math.Vec3d.ofCenter(chestPos)
+                    .subtract(client.player.getPos()).normalize();
+                client.player.setVelocity(direction.multiply(0.2));
+                chestTrip = scheduler.schedule(2000,
+                    () -> containerSessions.begin(chestPos, this::planTakeSmeltingMaterials));
+            } else {
+                containerSessions.begin(chestPos, this::planTakeSmeltingMaterials);
             }
-        }).start();
+        });
     }
     
-    private void takeSmeltingMaterialsFromChest() {
-        if (client.currentScreen == null || client.player == null) return;
+    private void planTakeSmeltingMaterials(ScreenHandler screenHandler, ContainerSessionEngine.ClickPlan plan) {
+        if (!(screenHandler instanceof GenericContainerScreenHandler handler)) return;
         
-        try {
-            for (int i = 0; i < 27; i++) { // Chest slots
-                ItemStack stack = client.player.currentScreenHandler.getSlot(i).getStack();
-                if (!stack.isEmpty() && isSmeltable(stack)) {
-                    client.interactionManager.clickSlot(
-                        client.player.currentScreenHandler.syncId,
-                        i, 0, SlotActionType.QUICK_MOVE, client.player
-                    );
-                    Thread.sleep(200);
-                }
+        int containerSize = handler.getRows() * 9;
+        for (int i = 0; i < containerSize; i++) {
+            ItemStack stack = handler.getSlot(i).getStack();
+            if (!stack.isEmpty() && isSmeltable(stack)) {
+                plan.add(i, 0, SlotActionType.QUICK_MOVE);
             }
-        } catch (Exception e) {}
+        }
     }
     
     private boolean isFuel(ItemStack stack) {
@@ -303,21 +234,10 @@ public class AutomationManager {
                stack.isOf(Items.CACTUS);
     }
     
-    private void scheduleFurnaceScreenClose() {
-        new Thread(() -> {
-            try {
-                Thread.sleep(2000 + ThreadLocalRandom.current().nextInt(3000));
-                
-                if (client.currentScreen != null && client.player != null) {
-                    client.execute(() -> client.player.closeHandledScreen());
-                }
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
-        }).start();
-    }
-    
     public void reset() {
         trackedFurnaces.clear();
+        scheduledFurnaceChecks.clear();
+        chestTrip = null;
+        needsSmeltables = false;
     }
 }
\ No newline at end of file
@@ -0,0 +1,231 @@
+package org.pluginmakers.antiafkplusplus.client.automation;
+
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.screen.ScreenHandler;
+import net.minecraft.screen.slot.SlotActionType;
+import net.minecraft.util.hit.BlockHitResult;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
+import net.minecraft.util.math.Vec3d;
+import org.pluginmakers.antiafkplusplus.client.network.OutboundArbiter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Drives one container visit at a time: open requested -> handler synced -> plan computed ->
+// clicks issued and acknowledged -> closed. Stages advance on screen and handler sync packets
+// instead of fixed sleeps, and the plan is computed and clicked exactly once per visit.
+public class ContainerSessionEngine {
+    public enum Stage {
+        IDLE, OPEN_REQUESTED, HANDLER_SYNCED, PLAN_COMPUTED, CLICKS_ISSUED, CLOSED
+    }
+
+    public interface Planner {
+        // Adds the clicks to make in the synced handler, an empty plan just closes the container
+        void plan(ScreenHandler handler, ClickPlan plan);
+    }
+
+    private static final int OPEN_TIMEOUT_TICKS = 40;
+    // The server only answers a click when it disagrees with the client's prediction, so a
+    // quiet period after the last click counts as acknowledgement
+    private static final int ACK_TIMEOUT_TICKS = 4;
+
+    private final MinecraftClient client;
+    private final OutboundArbiter outbound;
+    private final ClickPlan plan = new ClickPlan();
+
+    private Stage stage = Stage.IDLE;
+    private Planner planner;
+    private int syncId = -1;
+    private int stageTicks = 0;
+    private int sessionTicks = 0;
+
+    private long sessionsCompleted = 0;
+    private long sessionsAborted = 0;
+    private long clicksIssued = 0;
+    private long totalSessionTicks = 0;
+
+    public ContainerSessionEngine(MinecraftClient client, OutboundArbiter outbound) {
+        this.client = client;
+        this.outbound = outbound;
+    }
+
+    // Starts a visit unless one is already running, returns whether the open was requested
+    public boolean begin(BlockPos pos, Planner planner) {
+        if (stage != Stage.IDLE || client.player == null || client.interactionManager == null) return false;
+
+        BlockPos containerPos = pos.toImmutable();
+        this.planner = planner;
+        this.syncId = -1;
+        this.sessionTicks = 0;
+        enter(Stage.OPEN_REQUESTED);
+
+        BlockHitResult hitResult = new BlockHitResult(Vec3d.ofCenter(containerPos), Direction.UP, containerPos, false);
+        outbound.interactBlock(hitResult); // A deferred open still counts against the open timeout
+        return true;
+    }
+
+    public boolean isBusy() {
+        return stage != Stage.IDLE;
+    }
+
+    public Stage getStage() {
+        return stage;
+    }
+
+    public void tick() {
+        if (stage == Stage.IDLE) return;
+
+        stageTicks++;
+        sessionTicks++;
+        switch (stage) {
+            case OPEN_REQUESTED -> {
+                if (stageTicks > OPEN_TIMEOUT_TICKS) abort(); // Out of reach, blocked or the server ignored us
+            }
+            case CLICKS_ISSUED -> {
+                if (outbound.hasPendingClicks()) {
+                    stageTicks = 0; // Paced clicks are still going out
+                } else if (stageTicks > ACK_TIMEOUT_TICKS) {
+                    close();
+                }
+            }
+            default -> {
+                // Synced and planned advance within the sync event itself
+            }
+        }
+    }
+
+    public void onScreenOpened(int openedSyncId) {
+        if (stage == Stage.OPEN_REQUESTED) {
+            syncId = openedSyncId;
+        }
+    }
+
+    // Full contents sync of a handler, the first one after opening means the handler is usable
+    public void onHandlerSynced(int syncedSyncId) {
+        if (stage == Stage.OPEN_REQUESTED && syncedSyncId == syncId && isHandlerOpen()) {
+            enter(Stage.HANDLER_SYNCED);
+            computeAndIssue();
+        } else if (stage == Stage.CLICKS_ISSUED && syncedSyncId == syncId && !outbound.hasPendingClicks()) {
+            // The server resynced after our clicks, it has processed them
+            close();
+        }
+    }
+
+    public void onSlotUpdated(int updatedSyncId) {
+        if (stage == Stage.CLICKS_ISSUED && updatedSyncId == syncId) {
+            // Reset the quiet period, corrections for our clicks are still arriving
+            stageTicks = 0;
+        }
+    }
+
+    public void onScreenClosed(int closedSyncId) {
+        if (stage != Stage.IDLE && closedSyncId == syncId) {
+            abort(); // Closed by the server
+        }
+    }
+
+    public void cancel() {
+        if (stage == Stage.IDLE) return;
+
+        if (isHandlerOpen()) {
+            client.player.closeHandledScreen();
+        }
+        abort();
+    }
+
+    public String getStatsSummary() {
+        long average = sessionsCompleted == 0 ? 0 : totalSessionTicks / sessionsCompleted;
+        return "containers: " + sessionsCompleted + " visits (" + average + " ticks avg), " + sessionsAborted + " aborted, "
+            + clicksIssued + " clicks";
+    }
+
+    private void computeAndIssue() {
+        ScreenHandler handler = client.player.currentScreenHandler;
+        plan.clear();
+        planner.plan(handler, plan);
+        enter(Stage.PLAN_COMPUTED);
+
+        if (plan.size() == 0) {
+            close();
+            return;
+        }
+
+        for (int i = 0; i < plan.size(); i++) {
+            outbound.clickSlot(syncId, plan.slot(i), plan.button(i), plan.action(i));
+        }
+        clicksIssued += plan.size();
+        enter(Stage.CLICKS_ISSUED);
+    }
+
+    private void close() {
+        if (isHandlerOpen()) {
+            client.player.closeHandledScreen();
+        }
+        enter(Stage.CLOSED);
+        sessionsCompleted++;
+        totalSessionTicks += sessionTicks;
+        finish();
+    }
+
+    private void abort() {
+        sessionsAborted++;
+        finish();
+    }
+
+    private void finish() {
+        planner = null;
+        syncId = -1;
+        plan.clear();
+        enter(Stage.IDLE);
+    }
+
+    private void enter(Stage next) {
+        stage = next;
+        stageTicks = 0;
+    }
+
+    private boolean isHandlerOpen() {
+        return client.player != null && client.player.currentScreenHandler.syncId == syncId && syncId != -1;
+    }
+
+    public static class ClickPlan {
+        private final List<Click> clicks = new ArrayList<>();
+
+        public void add(int slot, int button, SlotActionType action) {
+            clicks.add(new Click(slot, button, action));
+        }
+
+        public int size() {
+            return clicks.size();
+        }
+
+        int slot(int index) {
+            return clicks.get(index).slot;
+        }
+
+        int button(int index) {
+            return clicks.get(index).button;
+        }
+
+        SlotActionType action(int index) {
+            return clicks.get(index).action;
+        }
+
+        void clear() {
+            clicks.clear();
+        }
+
+        private static class Click {
+            final int slot;
+            final int button;
+            final SlotActionType action;
+
+            Click(int slot, int button, SlotActionType action) {
+                this.slot = slot;
+                this.button = button;
+                this.action = action;
+            }
+        }
+    }
+}
@@ -3,6 +3,9 @@ package org.pluginmakers.antiafkplusplus.client.commands;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.util.math.BlockPos;
 import org.pluginmakers.antiafkplusplus.client.AntiAFKManager;
+import org.pluginmakers.antiafkplusplus.client.world.PoiRegistry;
+import org.pluginmakers.antiafkplusplus.client.world.SectionScanner;
+import org.pluginmakers.antiafkplusplus.client.world.SpatialQueryService;
 
 public class BaseCommands {
     private static final MinecraftClient client = MinecraftClient.getInstance();
@@ -26,22 +29,38 @@ public class BaseCommands {
             case "markchest" -> {
                 if (client.player != null) {
                     BlockPos pos = client.player.getBlockPos();
+                    // The scanner may not have reached this area yet, e.g. right after joining
+                    manager.getIncrementalScanner().indexNow(pos, 3, 2);
                     // Find chest near player
-                    for (int x = -3; x <= 3; x++) {
-                        for (int y = -2; y <= 2; y++) {
-                            for (int z = -3; z <= 3; z++) {
-                                BlockPos chestPos = pos.add(x, y, z);
-                                if (client.world != null && 
-                                    client.world.getBlockState(chestPos).getBlock().toString().toLowerCase().contains("chest")) {
-                                    basePerimeter.markChestInteractable(chestPos);
-                                    return;
-                                }
-                            }
-                        }
+                    BlockPos chestPos = manager.getSpatialQueryService().findNearest(
+                        SpatialQueryService.Caller.COMMAND_MARKCHEST, PoiRegistry.PoiType.CHEST, pos, 3, 2, null);
+                    if (chestPos != null) {
+                        basePerimeter.markChestInteractable(chestPos);
+                        return;
                     }
                     client.player.sendMessage(net.minecraft.text.Text.literal("§cNo chest found nearby"), false);
                 }
             }
+            case "stats" -> {
+                if (client.player != null) {
+                    client.player.sendMessage(net.minecraft.text.Text.literal(
+                        "§eSpatial queries:\n§7" + manager.getSpatialQueryService().getStatsSummary() +
+                        "\n§7" + SectionScanner.getStatsSummary() +
+                        "\n§7" + manager.getIncrementalScanner().getStatsSummary() +
+                        "\n§7" + manager.getAICore().getStatsSummary() +
+                        "\n§7" + manager.getScheduler().getStatsSummary() +
+                        "\n§7" + manager.getSubsystems().getStatsSummary() +
+                        "\n§7" + manager.getContainerSessions().getStatsSummary() +
+                        "\n§7" + manager.getInventoryIndex().getStatsSummary() +
+                        "\n§7" + manager.getOutbound().getStatsSummary() +
+                        "\n§7" + manager.getMovementController().getPathStatsSummary() +
+                        "\n§7" + manager.getNavGrid().getStatsSummary() +
+                        "\n§7" + manager.getTargetSampler().getStatsSummary() +
+                        "\n§7" + manager.getEmergencyManager().getStatsSummary() +
+                        "\n§7" + manager.getMovementLearner().getStatsSummary()
+                    ), false);
+                }
+            }
             default -> {
                 if (client.player != null) {
                     client.player.sendMessage(net.minecraft.text.Text.literal(
@@ -49,7 +68,8 @@ public class BaseCommands {
                         "§7/antiafk startperimeter - Start recording base perimeter\n" +
                         "§7/antiafk addpoint - Add current position to perimeter\n" +
                         "§7/antiafk finishperimeter - Finish perimeter recording\n" +
-                        "§7/antiafk markchest - Mark nearby chest as interactable"
+                        "§7/antiafk markchest - Mark nearby chest as interactable\n" +
+                        "§7/antiafk stats - Show scan statistics"
                     ), false);
                 }
             }
@@ -24,6 +24,7 @@ public class AntiAFKConfig {
     public int explorationRange = 32;
     public int movementInterval = 5000;
     public float movementSpeed = 0.8f;
+    public boolean exploreInsideBase = false; // Exploration targets stay within the recorded base bounds
     
     // Combat
     public boolean enableCombat = true;
@@ -67,6 +68,14 @@ public class AntiAFKConfig {
         "just mining around"
     };
     
+    // Performance
+    public long scanBudgetNanos = 500_000; // World scanning time allowed per client tick
+    public long decisionCacheTtlMs = 1000; // How long an unchanged AI decision is reused, 0 disables caching
+    public int interactionsPerSecond = 8; // Block/item uses and attacks, extra ones wait for the next tick
+    public int containerClicksPerSecond = 20; // Inventory clicks while a container is open
+    public int pathMaxNodes = 6000; // Nodes one path search may create before it settles for a partial path
+    public long pathBudgetNanos = 20_000_000; // Time one path search may take on the path worker
+    
     // Safety
     public boolean pauseOnPlayerNearby = true;
     public int playerDetectionRadius = 32;
@@ -75,6 +84,8 @@ public class AntiAFKConfig {
     public boolean pauseInDanger = true;
     
     private static AntiAFKConfig instance;
+    // Bumped on every save so derived caches know when to rebuild
+    private transient int revision = 0;
     
     public static AntiAFKConfig getInstance() {
         if (instance == null) {
@@ -99,7 +110,12 @@ public class AntiAFKConfig {
         return config;
     }
     
+    public int getRevision() {
+        return revision;
+    }
+    
     public void save() {
+        revision++;
         try {
             CONFIG_PATH.getParent().toFile().mkdirs();
             try (FileWriter writer = new FileWriter(CONFIG_PATH.toFile())) {
@@ -0,0 +1,276 @@
+package org.pluginmakers.antiafkplusplus.client.inventory;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import net.minecraft.block.BlockState;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.component.DataComponentTypes;
+import net.minecraft.component.type.FoodComponent;
+import net.minecraft.enchantment.Enchantment;
+import net.minecraft.enchantment.Enchantments;
+import net.minecraft.entity.player.PlayerInventory;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.Items;
+import net.minecraft.registry.entry.RegistryEntry;
+import net.minecraft.registry.tag.ItemTags;
+
+import java.util.Arrays;
+
+// What the AI needs to know about the player's inventory, kept per slot. refresh() compares
+// every slot against a cheap signature (stack instance, count, damage) and only reclassifies
+// the slots that changed, so queries answer from cached primitives.
+public class InventoryIndex {
+    public static final int FOOD = 1;
+    public static final int WEAPON = 1 << 1;
+    public static final int PICKAXE = 1 << 2;
+    public static final int AXE = 1 << 3;
+    public static final int SHOVEL = 1 << 4;
+    public static final int SWORD = 1 << 5;
+    public static final int WATER_BUCKET = 1 << 6;
+    public static final int TOOL = PICKAXE | AXE | SHOVEL | SWORD;
+
+    public static final int HOTBAR_SIZE = 9;
+    public static final int MAIN_SIZE = 36; // Hotbar and main inventory, armor and offhand follow
+    private static final int TRACKED_SLOTS = 41;
+    private static final int NOT_MEMOIZED = -2;
+
+    private final MinecraftClient client;
+    private final ItemStack[] stacks = new ItemStack[TRACKED_SLOTS];
+    private final int[] counts = new int[TRACKED_SLOTS];
+    private final int[] damages = new int[TRACKED_SLOTS];
+    private final int[] flags = new int[TRACKED_SLOTS];
+    private final int[] nutrition = new int[TRACKED_SLOTS];
+    private final float[] weaponDamage = new float[TRACKED_SLOTS];
+    private final Item[] items = new Item[TRACKED_SLOTS];
+    private final int[] efficiency = new int[TRACKED_SLOTS];
+    // Fastest hotbar slot per block state, valid while the hotbar's items and enchantments stay the same
+    private final Reference2IntOpenHashMap<BlockState> bestToolByState = new Reference2IntOpenHashMap<>();
+
+    private PlayerInventory trackedInventory;
+    private int revision = 0;
+    private int inventoryFlags = 0; // Union of the flags of every main inventory slot
+    private int freeHotbarMask = 0;
+    private int bestFoodSlot = -1;
+    private int bestWeaponSlot = -1;
+    private int waterBucketSlot = -1;
+    // Bumped when a hotbar slot changes item or efficiency level, durability loss alone keeps the memo
+    private int toolRevision = 0;
+    private int memoRevision = -1;
+
+    private long refreshes = 0;
+    private long slotsReclassified = 0;
+    private long toolMemoHits = 0;
+    private long toolMemoMisses = 0;
+
+    public InventoryIndex(MinecraftClient client) {
+        this.client = client;
+        bestToolByState.defaultReturnValue(NOT_MEMOIZED);
+    }
+
+    // Cheap when nothing changed, call before reading the index
+    public void refresh() {
+        if (client.player == null) {
+            trackedInventory = null;
+            return;
+        }
+
+        PlayerInventory inventory = client.player.getInventory();
+        if (inventory != trackedInventory) {
+            // Respawn or world change hands us a new inventory, nothing cached applies
+            trackedInventory = inventory;
+            Arrays.fill(stacks, null);
+            toolRevision++;
+        }
+
+        refreshes++;
+        boolean changed = false;
+        int size = Math.min(TRACKED_SLOTS, inventory.size());
+        for (int slot = 0; slot < size; slot++) {
+            ItemStack stack = inventory.getStack(slot);
+            if (stack == stacks[slot] && stack.getCount() == counts[slot] && stack.getDamage() == damages[slot]) continue;
+
+            classify(slot, stack);
+            changed = true;
+        }
+
+        if (changed) {
+            revision++;
+            updateSummary();
+        }
+    }
+
+    // Changes whenever any slot changed, for caches derived from the inventory
+    public int getRevision() {
+        return revision;
+    }
+
+    public int getBestFoodSlot() {
+        return bestFoodSlot;
+    }
+
+    public int getBestWeaponSlot() {
+        return bestWeaponSlot;
+    }
+
+    public int getWaterBucketSlot() {
+        return waterBucketSlot;
+    }
+
+    // Hotbar slot that breaks the block fastest, -1 if nothing beats the bare hand
+    public int getBestToolSlot(BlockState state) {
+        if (memoRevision != toolRevision) {
+            bestToolByState.clear();
+            memoRevision = toolRevision;
+        }
+
+        int slot = bestToolByState.getInt(state);
+        if (slot != NOT_MEMOIZED) {
+            toolMemoHits++;
+            return slot;
+        }
+
+        toolMemoMisses++;
+        slot = computeBestToolSlot(state);
+        bestToolByState.put(state, slot);
+        return slot;
+    }
+
+    // Bit i set means hotbar slot i is empty
+    public int getFreeHotbarMask() {
+        return freeHotbarMask;
+    }
+
+    public int getFirstFreeHotbarSlot() {
+        return freeHotbarMask == 0 ? -1 : Integer.numberOfTrailingZeros(freeHotbarMask);
+    }
+
+    // True if any hotbar or main inventory slot holds an item of the kind
+    public boolean has(int kind) {
+        return (inventoryFlags & kind) != 0;
+    }
+
+    public int getFlags(int slot) {
+        return flags[slot];
+    }
+
+    public boolean isSlotEmpty(int slot) {
+        return stacks[slot] == null || counts[slot] == 0;
+    }
+
+    public ItemStack getStack(int slot) {
+        return stacks[slot] == null ? ItemStack.EMPTY : stacks[slot];
+    }
+
+    public String getStatsSummary() {
+        return "inventory: " + refreshes + " refreshes, " + slotsReclassified + " slots reclassified, revision " + revision
+            + ", tool memo " + toolMemoHits + " hits / " + toolMemoMisses + " misses";
+    }
+
+    private void classify(int slot, ItemStack stack) {
+        stacks[slot] = stack;
+        counts[slot] = stack.getCount();
+        damages[slot] = stack.getDamage();
+        nutrition[slot] = 0;
+        weaponDamage[slot] = 0;
+        slotsReclassified++;
+
+        int level = stack.isEmpty() ? 0 : getEfficiencyLevel(stack);
+        if (slot < HOTBAR_SIZE && (items[slot] != stack.getItem() || efficiency[slot] != level)) {
+            toolRevision++;
+        }
+        items[slot] = stack.getItem();
+        efficiency[slot] = level;
+
+        int kind = 0;
+        if (!stack.isEmpty()) {
+            FoodComponent food = stack.get(DataComponentTypes.FOOD);
+            if (food != null) {
+                kind |= FOOD;
+                nutrition[slot] = food.nutrition();
+            }
+            if (stack.isIn(ItemTags.PICKAXES)) kind |= PICKAXE;
+            if (stack.isIn(ItemTags.AXES)) kind |= AXE;
+            if (stack.isIn(ItemTags.SHOVELS)) kind |= SHOVEL;
+            if (stack.isIn(ItemTags.SWORDS)) kind |= SWORD;
+            if ((kind & (SWORD | AXE)) != 0) {
+                kind |= WEAPON;
+                weaponDamage[slot] = getItemDamage(stack);
+            }
+            if (stack.isOf(Items.WATER_BUCKET)) kind |= WATER_BUCKET;
+        }
+        flags[slot] = kind;
+    }
+
+    // Recomputed from the cached primitives only, no stack is touched here
+    private void updateSummary() {
+        inventoryFlags = 0;
+        freeHotbarMask = 0;
+        bestFoodSlot = -1;
+        bestWeaponSlot = -1;
+        waterBucketSlot = -1;
+
+        for (int slot = 0; slot < MAIN_SIZE; slot++) {
+            inventoryFlags |= flags[slot];
+            if (slot >= HOTBAR_SIZE) continue;
+
+            if (isSlotEmpty(slot)) {
+                freeHotbarMask |= 1 << slot;
+            }
+            if ((flags[slot] & FOOD) != 0 && (bestFoodSlot == -1 || nutrition[slot] > nutrition[bestFoodSlot])) {
+                bestFoodSlot = slot;
+            }
+            if ((flags[slot] & WEAPON) != 0 && (bestWeaponSlot == -1 || weaponDamage[slot] > weaponDamage[bestWeaponSlot])) {
+                bestWeaponSlot = slot;
+            }
+            if ((flags[slot] & WATER_BUCKET) != 0 && waterBucketSlot == -1) {
+                waterBucketSlot = slot;
+            }
+        }
+    }
+
+    // Same terms as PlayerEntity.getBlockBreakingSpeed, minus the effects and the hardness that
+    // are equal for every slot: tool speed, efficiency bonus and the 30/100 correct-tool divisor
+    private int computeBestToolSlot(BlockState state) {
+        boolean toolRequired = state.isToolRequired();
+        float bestSpeed = 1.0f / (toolRequired ? 100.0f : 30.0f);
+        int bestSlot = -1;
+
+        for (int slot = 0; slot < HOTBAR_SIZE; slot++) {
+            if (isSlotEmpty(slot)) continue;
+
+            ItemStack stack = stacks[slot];
+            float speed = stack.getMiningSpeedMultiplier(state);
+            if (speed > 1.0f && efficiency[slot] > 0) {
+                speed += efficiency[slot] * efficiency[slot] + 1;
+            }
+            boolean harvests = !toolRequired || stack.isSuitableFor(state);
+            speed /= harvests ? 30.0f : 100.0f;
+
+            if (speed > bestSpeed) {
+                bestSpeed = speed;
+                bestSlot = slot;
+            }
+        }
+        return bestSlot;
+    }
+
+    private static int getEfficiencyLevel(ItemStack stack) {
+        for (Object2IntMap.Entry<RegistryEntry<Enchantment>> entry : stack.getEnchantments().getEnchantmentEntries()) {
+            if (entry.getKey().matchesKey(Enchantments.EFFICIENCY)) {
+                return entry.getIntValue();
+            }
+        }
+        return 0;
+    }
+
+    private static float getItemDamage(ItemStack stack) {
+        // Simplified damage calculation, only done when the slot changes
+        String itemName = stack.getItem().toString().toLowerCase();
+        if (itemName.contains("diamond")) return 7.0f;
+        if (itemName.contains("iron")) return 6.0f;
+        if (itemName.contains("stone")) return 5.0f;
+        if (itemName.contains("wood")) return 4.0f;
+        return 1.0f;
+    }
+}
@@ -0,0 +1,272 @@
+package org.pluginmakers.antiafkplusplus.client.network;
+
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.entity.Entity;
+import net.minecraft.screen.slot.SlotActionType;
+import net.minecraft.util.Hand;
+import net.minecraft.util.hit.BlockHitResult;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
+import net.minecraft.util.math.Vec3d;
+import org.pluginmakers.antiafkplusplus.client.config.AntiAFKConfig;
+
+import java.util.ArrayDeque;
+
+// Every rotation, hotbar switch, interaction and container click the mod makes goes through
+// here. Rotations and slot switches are collapsed to their last value and applied once per
+// tick (or right before an interaction that depends on them), interactions and clicks spend
+// tokens from a bucket per category and wait in order for the next tick when it runs dry.
+// While the player stands still the game sends every look change as a look-only packet, so
+// at the end of a tick a turn below MIN_LOOK_DELTA is held back until it adds up; a switch to
+// the slot already selected sends nothing at all.
+public class OutboundArbiter {
+    private static final int INTERACT_BURST = 2;
+    private static final int CLICK_BURST = 4;
+    // Interactions aimed at what the bot saw this many ticks ago are no longer worth sending
+    private static final int MAX_DEFER_TICKS = 10;
+    private static final float MIN_LOOK_DELTA = 0.25f; // Degrees
+
+    private final MinecraftClient client;
+    private final AntiAFKConfig config;
+    private final TokenBucket interactions = new TokenBucket(INTERACT_BURST);
+    private final TokenBucket clicks = new TokenBucket(CLICK_BURST);
+    private final ArrayDeque<Deferred> deferredInteractions = new ArrayDeque<>();
+    private final ArrayDeque<Deferred> deferredClicks = new ArrayDeque<>();
+
+    private boolean rotationPending = false;
+    private float pendingYaw;
+    private float pendingPitch;
+    private int pendingSlot = -1;
+    private long tick = 0;
+
+    private long rotationsApplied = 0;
+    private long lookPacketsSkipped = 0;
+    private long slotSwitchesApplied = 0;
+    private long slotPacketsElided = 0;
+    private long interactionsSent = 0;
+    private long clicksSent = 0;
+    private long deferred = 0;
+    private long dropped = 0;
+
+    public OutboundArbiter(MinecraftClient client) {
+        this.client = client;
+        this.config = AntiAFKConfig.getInstance();
+    }
+
+    // Refills the buckets and sends whatever earlier ticks had to hold back
+    public void beginTick() {
+        tick++;
+        interactions.refill(config.interactionsPerSecond / 20.0);
+        clicks.refill(config.containerClicksPerSecond / 20.0);
+
+        drain(deferredInteractions, interactions);
+        drain(deferredClicks, clicks);
+    }
+
+    public void endTick() {
+        applyView(false);
+    }
+
+    // Rotation as it will be sent, including a change requested earlier this tick
+    public float getYaw() {
+        return rotationPending ? pendingYaw : client.player.getYaw();
+    }
+
+    public float getPitch() {
+        return rotationPending ? pendingPitch : client.player.getPitch();
+    }
+
+    public void rotate(float yaw, float pitch) {
+        rotationPending = true;
+        pendingYaw = yaw;
+        pendingPitch = Math.max(-90.0f, Math.min(90.0f, pitch));
+    }
+
+    public void selectHotbarSlot(int slot) {
+        pendingSlot = slot;
+    }
+
+    // Returns whether the interaction went out now rather than being deferred
+    public boolean interactBlock(BlockHitResult hitResult) {
+        return submit(deferredInteractions, interactions, new Deferred(tick, -1,
+            () -> client.interactionManager.interactBlock(client.player, Hand.MAIN_HAND, hitResult)));
+    }
+
+    public boolean interactItem() {
+        return submit(deferredInteractions, interactions, new Deferred(tick, -1,
+            () -> client.interactionManager.interactItem(client.player, Hand.MAIN_HAND)));
+    }
+
+    public boolean attackBlock(BlockPos pos, Direction side) {
+        BlockPos target = pos.toImmutable();
+        return submit(deferredInteractions, interactions, new Deferred(tick, -1,
+            () -> client.interactionManager.attackBlock(target, side)));
+    }
+
+    public boolean attackEntity(Entity target) {
+        return submit(deferredInteractions, interactions, new Deferred(tick, -1, () -> {
+            if (target.isAlive()) {
+                client.interactionManager.attackEntity(client.player, target);
+            }
+        }));
+    }
+
+    // Never deferred, a clutch that waits a tick lands too late. The bucket goes into debt instead.
+    // The item is used along the exact pending look, which the server raycasts from
+    public void interactItemNow() {
+        interactions.take();
+        applyView(true);
+        client.interactionManager.interactItem(client.player, Hand.MAIN_HAND);
+        interactionsSent++;
+    }
+
+    // Clicks keep their order, a click for a handler that has since closed is dropped
+    public void clickSlot(int syncId, int slot, int button, SlotActionType action) {
+        submit(deferredClicks, clicks, new Deferred(tick, syncId,
+            () -> client.interactionManager.clickSlot(syncId, slot, button, action, client.player)));
+    }
+
+    public boolean hasPendingClicks() {
+        return !deferredClicks.isEmpty();
+    }
+
+    public void cancelAll() {
+        dropped += deferredInteractions.size() + deferredClicks.size();
+        deferredInteractions.clear();
+        deferredClicks.clear();
+        rotationPending = false;
+        pendingSlot = -1;
+    }
+
+    public String getStatsSummary() {
+        return "outbound: " + rotationsApplied + " rotations (" + lookPacketsSkipped + " look packets skipped), "
+            + slotSwitchesApplied + " slot switches (" + slotPacketsElided + " elided), " + deferred + " deferred, "
+            + dropped + " dropped, " + interactionsSent + " interactions, " + clicksSent + " clicks";
+    }
+
+    private boolean submit(ArrayDeque<Deferred> queue, TokenBucket bucket, Deferred action) {
+        if (client.player == null || client.interactionManager == null) return false;
+
+        if (queue.isEmpty() && bucket.tryTake()) {
+            send(queue, action);
+            return true;
+        }
+
+        queue.add(action);
+        deferred++;
+        return false;
+    }
+
+    private void drain(ArrayDeque<Deferred> queue, TokenBucket bucket) {
+        while (!queue.isEmpty()) {
+            if (client.player == null || client.interactionManager == null) {
+                dropped += queue.size();
+                queue.clear();
+                return;
+            }
+
+            Deferred head = queue.peek();
+            if (isStale(head)) {
+                queue.poll();
+                dropped++;
+                continue;
+            }
+            if (!bucket.tryTake()) return;
+
+            queue.poll();
+            send(queue, head);
+        }
+    }
+
+    private boolean isStale(Deferred action) {
+        if (action.syncId != -1) {
+            return client.player.currentScreenHandler.syncId != action.syncId;
+        }
+        return tick - action.tick > MAX_DEFER_TICKS;
+    }
+
+    private void send(ArrayDeque<Deferred> queue, Deferred action) {
+        // The server reads the look and selected slot that precede the interaction
+        applyView(true);
+        action.send.run();
+        if (queue == deferredClicks) {
+            clicksSent++;
+        } else {
+            interactionsSent++;
+        }
+    }
+
+    // exact is for interactions, which must go out with the look that was asked for
+    private void applyView(boolean exact) {
+        if (client.player == null) {
+            rotationPending = false;
+            pendingSlot = -1;
+            return;
+        }
+
+        if (rotationPending) {
+            if (!exact && isLookOnly() && Math.abs(pendingYaw - client.player.getYaw()) < MIN_LOOK_DELTA
+                && Math.abs(pendingPitch - client.player.getPitch()) < MIN_LOOK_DELTA) {
+                // Stays pending, a later request replaces it or the turn grows past the threshold
+                lookPacketsSkipped++;
+            } else {
+                client.player.setYaw(pendingYaw);
+                client.player.setPitch(pendingPitch);
+                rotationsApplied++;
+                rotationPending = false;
+            }
+        }
+        if (pendingSlot != -1) {
+            if (pendingSlot != client.player.getInventory().getSelectedSlot()) {
+                client.player.getInventory().setSelectedSlot(pendingSlot);
+                slotSwitchesApplied++;
+            } else {
+                slotPacketsElided++;
+            }
+            pendingSlot = -1;
+        }
+    }
+
+    // Standing on the ground without horizontal motion, the game has no position packet to
+    // carry a look change and sends it by itself
+    private boolean isLookOnly() {
+        Vec3d velocity = client.player.getVelocity();
+        return client.player.isOnGround() && velocity.x * velocity.x + velocity.z * velocity.z < 1.0e-6;
+    }
+
+    private static class Deferred {
+        final long tick;
+        final int syncId; // -1 for interactions, which go stale by age instead
+        final Runnable send;
+
+        Deferred(long tick, int syncId, Runnable send) {
+            this.tick = tick;
+            this.syncId = syncId;
+            this.send = send;
+        }
+    }
+
+    private static class TokenBucket {
+        private final int capacity;
+        private double tokens;
+
+        TokenBucket(int capacity) {
+            this.capacity = capacity;
+            this.tokens = capacity;
+        }
+
+        void refill(double amount) {
+            tokens = Math.min(capacity, tokens + amount);
+        }
+
+        boolean tryTake() {
+            if (tokens < 1.0) return false;
+            tokens -= 1.0;
+            return true;
+        }
+
+        void take() {
+            tokens -= 1.0;
+        }
+    }
+}
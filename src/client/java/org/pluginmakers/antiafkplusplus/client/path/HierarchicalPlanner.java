@@ -0,0 +1,515 @@
+package org.pluginmakers.antiafkplusplus.client.path;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.World;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Coarse level for long trips. Every nav grid section is split into regions, sets of standing
+// positions that reach each other with walks and one block steps without leaving the section.
+// Regions link to regions of neighbouring sections wherever a pathfinder move crosses the
+// border, and one-way drops link regions inside a section. A* over that graph gives a corridor
+// of region representatives; only the stretch being walked is refined by the block-level search.
+// Labels and links are computed when a search first touches a section and dropped when its
+// blocks change. Client thread only, so the budget covers everything a plan does: the search
+// checks it every expansion, and a section is only built, labeled or linked while time is
+// left, which bounds the overshoot to one section's work. A section with more regions than
+// MAX_REGIONS gets none and counts as impassable here; the block-level search still crosses it.
+public class HierarchicalPlanner {
+    private static final byte NONE = -1;
+    private static final int MAX_REGIONS = 127;
+    private static final int MAX_CACHED_SECTIONS = 2048;
+    private static final int MAX_NODES = 4000;
+    private static final int SELF = 13; // Link direction of the section itself, (0, 0, 0)
+    private static final int[] CARDINAL_X = {1, -1, 0, 0};
+    private static final int[] CARDINAL_Z = {0, 0, 1, -1};
+
+    private final MinecraftClient client;
+    private final NavGrid navGrid;
+    private final Long2ObjectOpenHashMap<SectionRegions> regionsBySection = new Long2ObjectOpenHashMap<>();
+    private final int[] queue = new int[4096];
+    private int nextSerial = 0;
+    private World labeledWorld;
+    private long deadline;
+    private boolean budgetHit;
+
+    // Per search node tables, reused between searches
+    private final Long2IntOpenHashMap nodeSlots = new Long2IntOpenHashMap();
+    private final NodeHeap open = new NodeHeap(MAX_NODES);
+    private final SectionRegions[] nodeSections = new SectionRegions[MAX_NODES];
+    private final int[] nodeRegion = new int[MAX_NODES];
+    private final float[] nodeCost = new float[MAX_NODES];
+    private final int[] nodeParent = new int[MAX_NODES];
+    private final boolean[] nodeClosed = new boolean[MAX_NODES];
+    private int nodeCount;
+
+    private long plans = 0;
+    private long found = 0;
+    private long partial = 0;
+    private long failed = 0;
+    private long totalNodes = 0;
+    private long totalNanos = 0;
+    private long sectionsLabeled = 0;
+    private long labelNanos = 0;
+    private long overflowedSections = 0;
+    private long budgetStops = 0;
+    private long lastNanos = 0;
+
+    public HierarchicalPlanner(MinecraftClient client, NavGrid navGrid) {
+        this.client = client;
+        this.navGrid = navGrid;
+        nodeSlots.defaultReturnValue(-1);
+    }
+
+    // Corridor of region representatives from the start towards the goal, FAILED when the start
+    // is not on walkable ground or nothing leads away from it
+    public Path plan(int startX, int startY, int startZ, int goalX, int goalY, int goalZ, long maxNanos) {
+        long started = System.nanoTime();
+        deadline = started + maxNanos;
+        budgetHit = false;
+        if (client.world != labeledWorld) {
+            clear();
+            labeledWorld = client.world;
+        }
+        nodeSlots.clear();
+        open.clear();
+        nodeCount = 0;
+
+        Path path = search(startX, startY, startZ, goalX, goalY, goalZ);
+
+        plans++;
+        if (budgetHit) budgetStops++;
+        totalNodes += nodeCount;
+        lastNanos = System.nanoTime() - started;
+        totalNanos += lastNanos;
+        switch (path.getResult()) {
+            case FOUND -> found++;
+            case PARTIAL -> partial++;
+            case FAILED -> failed++;
+        }
+        Arrays.fill(nodeSections, 0, nodeCount, null);
+        return path;
+    }
+
+    public void onBlockChanged(BlockPos pos) {
+        // Nav grid bits of the block above and below change too, and they may sit in other sections
+        int sectionX = pos.getX() >> 4, sectionZ = pos.getZ() >> 4;
+        for (int sectionY = (pos.getY() - 1) >> 4; sectionY <= (pos.getY() + 1) >> 4; sectionY++) {
+            invalidate(sectionX, sectionY, sectionZ);
+        }
+    }
+
+    public void onChunkChanged(int chunkX, int chunkZ) {
+        if (regionsBySection.isEmpty()) return;
+
+        List<SectionRegions> column = new ArrayList<>();
+        for (SectionRegions regions : regionsBySection.values()) {
+            if (ChunkSectionPos.unpackX(regions.key) == chunkX && ChunkSectionPos.unpackZ(regions.key) == chunkZ) {
+                column.add(regions);
+            }
+        }
+        for (SectionRegions regions : column) {
+            invalidate(ChunkSectionPos.unpackX(regions.key), ChunkSectionPos.unpackY(regions.key), chunkZ);
+        }
+    }
+
+    public void clear() {
+        regionsBySection.clear();
+    }
+
+    // Time the last plan() took, labeling included
+    public long getLastNanos() {
+        return lastNanos;
+    }
+
+    public String getStatsSummary() {
+        long averageNodes = plans == 0 ? 0 : totalNodes / plans;
+        long averageMicros = plans == 0 ? 0 : totalNanos / plans / 1000;
+        long averageLabelMicros = sectionsLabeled == 0 ? 0 : labelNanos / sectionsLabeled / 1000;
+        return "hierarchy: " + plans + " plans (" + found + " found, " + partial + " partial, " + failed + " failed), "
+            + averageNodes + " regions / " + averageMicros + "us avg, " + budgetStops + " stopped by the budget, "
+            + sectionsLabeled + " sections labeled (" + averageLabelMicros + "us avg, " + overflowedSections
+            + " over " + MAX_REGIONS + " regions), " + regionsBySection.size() + " cached";
+    }
+
+    private Path search(int startX, int startY, int startZ, int goalX, int goalY, int goalZ) {
+        long startCell = findStandable(startX, startY, startZ, 0);
+        if (startCell == Long.MIN_VALUE) return new Path(new long[0], Path.Result.FAILED);
+
+        // The goal block is often solid (a chest, an ore), settle for ground next to it
+        long goalCell = findStandable(goalX, goalY, goalZ, 2);
+        SectionRegions goalRegions = goalCell == Long.MIN_VALUE ? null : regionsAt(goalCell);
+        int goalRegion = goalRegions == null ? NONE : goalRegions.labelAt(goalCell);
+        if (goalRegion == NONE) goalRegions = null; // Reaching the goal's section will do
+        long goalSection = ChunkSectionPos.asLong(goalX >> 4, goalY >> 4, goalZ >> 4);
+
+        SectionRegions startRegions = regionsAt(startCell);
+        if (startRegions == null || startRegions.labelAt(startCell) == NONE) return new Path(new long[0], Path.Result.FAILED);
+        int startSlot = addNode(startRegions, startRegions.labelAt(startCell), -1, 0.0f);
+        open.offer(startSlot, heuristic(startRegions, nodeRegion[startSlot], goalX, goalY, goalZ));
+
+        int bestSlot = startSlot;
+        float bestHeuristic = heuristic(startRegions, nodeRegion[startSlot], goalX, goalY, goalZ);
+        int goalSlot = -1;
+        int expanded = 0;
+
+        while (!open.isEmpty()) {
+            if (expanded > 0 && System.nanoTime() > deadline) {
+                budgetHit = true;
+                break;
+            }
+
+            int slot = open.poll();
+            nodeClosed[slot] = true;
+            expanded++;
+
+            SectionRegions regions = nodeSections[slot];
+            int region = nodeRegion[slot];
+            boolean reached = goalRegions != null
+                ? regions == goalRegions && region == goalRegion
+                : regions.key == goalSection;
+            if (reached) {
+                goalSlot = slot;
+                break;
+            }
+
+            float h = heuristic(regions, region, goalX, goalY, goalZ);
+            if (h < bestHeuristic) {
+                bestHeuristic = h;
+                bestSlot = slot;
+            }
+
+            if (nodeCount > MAX_NODES - 64) break;
+            expand(slot, goalX, goalY, goalZ);
+        }
+
+        if (goalSlot != -1) return new Path(reconstruct(goalSlot), Path.Result.FOUND);
+        if (bestSlot != startSlot) return new Path(reconstruct(bestSlot), Path.Result.PARTIAL);
+        return new Path(new long[0], Path.Result.FAILED);
+    }
+
+    private void expand(int slot, int goalX, int goalY, int goalZ) {
+        SectionRegions regions = nodeSections[slot];
+        int region = nodeRegion[slot];
+        int sectionX = ChunkSectionPos.unpackX(regions.key);
+        int sectionY = ChunkSectionPos.unpackY(regions.key);
+        int sectionZ = ChunkSectionPos.unpackZ(regions.key);
+        if (!regions.linked) {
+            if (!ensureBuilt(sectionX, sectionY, sectionZ)) return;
+            link(regions);
+        }
+
+        IntArrayList links = regions.links[region];
+        for (int i = 0; i < links.size(); i++) {
+            int link = links.getInt(i);
+            int direction = link >> 7;
+            int targetRegion = link & 127;
+
+            SectionRegions target = direction == SELF ? regions : getRegions(
+                sectionX + direction / 9 - 1, sectionY + (direction / 3) % 3 - 1, sectionZ + direction % 3 - 1);
+            if (target == null || targetRegion >= target.regionCount) continue;
+
+            float cost = nodeCost[slot] + distance(regions, region, target, targetRegion);
+            long key = (long) target.serial << 8 | targetRegion;
+            int targetSlot = nodeSlots.get(key);
+            if (targetSlot == -1) {
+                if (nodeCount >= MAX_NODES) return;
+                targetSlot = addNode(target, targetRegion, slot, cost);
+            } else if (nodeClosed[targetSlot] || cost >= nodeCost[targetSlot]) {
+                continue;
+            } else {
+                nodeCost[targetSlot] = cost;
+                nodeParent[targetSlot] = slot;
+            }
+            open.offer(targetSlot, cost + heuristic(target, targetRegion, goalX, goalY, goalZ));
+        }
+    }
+
+    private int addNode(SectionRegions regions, int region, int parent, float cost) {
+        int slot = nodeCount++;
+        nodeSections[slot] = regions;
+        nodeRegion[slot] = region;
+        nodeCost[slot] = cost;
+        nodeParent[slot] = parent;
+        nodeClosed[slot] = false;
+        nodeSlots.put((long) regions.serial << 8 | region, slot);
+        return slot;
+    }
+
+    // Representatives of the regions after the start one
+    private long[] reconstruct(int endSlot) {
+        int length = 0;
+        for (int slot = endSlot; nodeParent[slot] != -1; slot = nodeParent[slot]) length++;
+
+        long[] corridor = new long[length];
+        int index = length - 1;
+        for (int slot = endSlot; nodeParent[slot] != -1; slot = nodeParent[slot]) {
+            corridor[index--] = nodeSections[slot].representative[nodeRegion[slot]];
+        }
+        return corridor;
+    }
+
+    private static float heuristic(SectionRegions regions, int region, int goalX, int goalY, int goalZ) {
+        long rep = regions.representative[region];
+        float dx = BlockPos.unpackLongX(rep) - goalX;
+        float dy = BlockPos.unpackLongY(rep) - goalY;
+        float dz = BlockPos.unpackLongZ(rep) - goalZ;
+        return (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    private static float distance(SectionRegions from, int fromRegion, SectionRegions to, int toRegion) {
+        long a = from.representative[fromRegion];
+        long b = to.representative[toRegion];
+        float dx = BlockPos.unpackLongX(a) - BlockPos.unpackLongX(b);
+        float dy = BlockPos.unpackLongY(a) - BlockPos.unpackLongY(b);
+        float dz = BlockPos.unpackLongZ(a) - BlockPos.unpackLongZ(b);
+        return (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    // Nearest standing position around the block, Long.MIN_VALUE if there is none within radius
+    private long findStandable(int x, int y, int z, int radius) {
+        if (navGrid.canStand(x, y, z)) return BlockPos.asLong(x, y, z);
+        if (navGrid.canStand(x, y + 1, z)) return BlockPos.asLong(x, y + 1, z);
+        for (int drop = 1; drop <= PathFinder.MAX_FALL; drop++) {
+            if (navGrid.canStand(x, y - drop, z)) return BlockPos.asLong(x, y - drop, z);
+        }
+
+        long best = Long.MIN_VALUE;
+        int bestDistance = Integer.MAX_VALUE;
+        for (int dy = -radius; dy <= radius; dy++) {
+            for (int dz = -radius; dz <= radius; dz++) {
+                for (int dx = -radius; dx <= radius; dx++) {
+                    int distance = dx * dx + dy * dy + dz * dz;
+                    if (distance < bestDistance && navGrid.canStand(x + dx, y + dy, z + dz)) {
+                        best = BlockPos.asLong(x + dx, y + dy, z + dz);
+                        bestDistance = distance;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    private SectionRegions regionsAt(long cell) {
+        return getRegions(BlockPos.unpackLongX(cell) >> 4, BlockPos.unpackLongY(cell) >> 4, BlockPos.unpackLongZ(cell) >> 4);
+    }
+
+    private SectionRegions getRegions(int sectionX, int sectionY, int sectionZ) {
+        long key = ChunkSectionPos.asLong(sectionX, sectionY, sectionZ);
+        SectionRegions regions = regionsBySection.get(key);
+        if (regions == null) {
+            if (!ensureBuilt(sectionX, sectionY, sectionZ)) return null;
+            regions = label(key, sectionX, sectionY, sectionZ);
+            if (regions == null) return null;
+            if (regionsBySection.size() >= MAX_CACHED_SECTIONS) {
+                regionsBySection.clear();
+            }
+            regionsBySection.put(key, regions);
+        }
+        return regions;
+    }
+
+    // Builds the nav grid sections labeling and linking this one reads, one at a time while the
+    // budget lasts; false once it ran out
+    private boolean ensureBuilt(int sectionX, int sectionY, int sectionZ) {
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dy = -1; dy <= 1; dy++) {
+                for (int dz = -1; dz <= 1; dz++) {
+                    if (navGrid.getBuiltSection(sectionX + dx, sectionY + dy, sectionZ + dz) != null) continue;
+
+                    if (System.nanoTime() > deadline) {
+                        budgetHit = true;
+                        return false;
+                    }
+                    navGrid.getSection(sectionX + dx, sectionY + dy, sectionZ + dz); // Null for unloaded chunks
+                }
+            }
+        }
+        return true;
+    }
+
+    private void invalidate(int sectionX, int sectionY, int sectionZ) {
+        if (regionsBySection.remove(ChunkSectionPos.asLong(sectionX, sectionY, sectionZ)) == null) return;
+
+        // Neighbours link to this section's labels, which are about to be renumbered
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dy = -1; dy <= 1; dy++) {
+                for (int dz = -1; dz <= 1; dz++) {
+                    SectionRegions neighbour = regionsBySection.get(ChunkSectionPos.asLong(sectionX + dx, sectionY + dy, sectionZ + dz));
+                    if (neighbour != null) neighbour.linked = false;
+                }
+            }
+        }
+    }
+
+    // Flood fill over standing positions with reversible moves: walks and one block steps
+    private SectionRegions label(long key, int sectionX, int sectionY, int sectionZ) {
+        NavGrid.Section section = navGrid.getSection(sectionX, sectionY, sectionZ);
+        if (section == null) return null;
+
+        long started = System.nanoTime();
+        SectionRegions regions = new SectionRegions(key, nextSerial++);
+        byte[] labels = regions.labels;
+        int baseX = sectionX << 4, baseY = sectionY << 4, baseZ = sectionZ << 4;
+        long[] sumX = new long[MAX_REGIONS], sumY = new long[MAX_REGIONS], sumZ = new long[MAX_REGIONS];
+        int[] counts = new int[MAX_REGIONS];
+
+        for (int seed = 0; seed < 4096; seed++) {
+            if (labels[seed] != NONE || !section.canStand(seed)) continue;
+
+            if (regions.regionCount == MAX_REGIONS) {
+                // Merging the rest into one label would join areas that do not connect
+                overflowedSections++;
+                Arrays.fill(labels, NONE);
+                regions.regionCount = 0;
+                break;
+            }
+            int region = regions.regionCount++;
+            labels[seed] = (byte) region;
+            int head = 0, tail = 0;
+            queue[tail++] = seed;
+            while (head < tail) {
+                int cell = queue[head++];
+                int lx = cell & 15, lz = (cell >> 4) & 15, ly = cell >> 8;
+                sumX[region] += lx;
+                sumY[region] += ly;
+                sumZ[region] += lz;
+                counts[region]++;
+
+                int x = baseX + lx, y = baseY + ly, z = baseZ + lz;
+                boolean headroom = navGrid.isPassable(x, y + 2, z);
+                for (int i = 0; i < 4; i++) {
+                    int nlx = lx + CARDINAL_X[i], nlz = lz + CARDINAL_Z[i];
+                    if (nlx < 0 || nlx > 15 || nlz < 0 || nlz > 15) continue;
+
+                    for (int dy = -1; dy <= 1; dy++) {
+                        int nly = ly + dy;
+                        if (nly < 0 || nly > 15) continue;
+
+                        int neighbour = nly << 8 | nlz << 4 | nlx;
+                        if (labels[neighbour] != NONE || !section.canStand(neighbour)) continue;
+                        if (dy == 1 && !headroom) continue;
+                        if (dy == -1 && !navGrid.isPassable(baseX + nlx, y + 1, baseZ + nlz)) continue;
+
+                        labels[neighbour] = (byte) region;
+                        queue[tail++] = neighbour;
+                    }
+                }
+            }
+        }
+
+        // Representative: the member closest to the region's centroid
+        int[] bestDistance = new int[regions.regionCount];
+        Arrays.fill(bestDistance, Integer.MAX_VALUE);
+        regions.representative = new long[regions.regionCount];
+        for (int cell = 0; cell < 4096; cell++) {
+            int region = labels[cell];
+            if (region == NONE) continue;
+
+            int lx = cell & 15, lz = (cell >> 4) & 15, ly = cell >> 8;
+            int dx = (int) (lx - sumX[region] / counts[region]);
+            int dy = (int) (ly - sumY[region] / counts[region]);
+            int dz = (int) (lz - sumZ[region] / counts[region]);
+            int distance = dx * dx + dy * dy + dz * dz;
+            if (distance < bestDistance[region]) {
+                bestDistance[region] = distance;
+                regions.representative[region] = BlockPos.asLong(baseX + lx, baseY + ly, baseZ + lz);
+            }
+        }
+
+        regions.links = new IntArrayList[regions.regionCount];
+        for (int region = 0; region < regions.regionCount; region++) {
+            regions.links[region] = new IntArrayList(4);
+        }
+
+        sectionsLabeled++;
+        labelNanos += System.nanoTime() - started;
+        return regions;
+    }
+
+    // Every pathfinder move that leaves the section, or drops more than a step within it. Linking
+    // again later completes what a neighbour the budget did not allow to be labeled left out
+    private void link(SectionRegions regions) {
+        for (IntArrayList links : regions.links) links.clear();
+        boolean budgetHitBefore = budgetHit;
+        budgetHit = false;
+
+        int sectionX = ChunkSectionPos.unpackX(regions.key);
+        int sectionY = ChunkSectionPos.unpackY(regions.key);
+        int sectionZ = ChunkSectionPos.unpackZ(regions.key);
+        int baseX = sectionX << 4, baseY = sectionY << 4, baseZ = sectionZ << 4;
+
+        for (int cell = 0; cell < 4096; cell++) {
+            int region = regions.labels[cell];
+            if (region == NONE) continue;
+
+            int x = baseX + (cell & 15), y = baseY + (cell >> 8), z = baseZ + ((cell >> 4) & 15);
+            boolean headroom = navGrid.isPassable(x, y + 2, z);
+            for (int i = 0; i < 4; i++) {
+                int nx = x + CARDINAL_X[i], nz = z + CARDINAL_Z[i];
+                int ny;
+                if (navGrid.canStand(nx, y, nz)) {
+                    ny = y;
+                } else if (navGrid.isPassable(nx, y, nz) && navGrid.isPassable(nx, y + 1, nz)) {
+                    ny = Integer.MIN_VALUE;
+                    for (int drop = 1; drop <= PathFinder.MAX_FALL; drop++) {
+                        if (navGrid.canStand(nx, y - drop, nz)) {
+                            ny = y - drop;
+                            break;
+                        }
+                        if (!navGrid.isPassable(nx, y - drop, nz)) break;
+                    }
+                    if (ny == Integer.MIN_VALUE) continue;
+                } else if (headroom && navGrid.canStand(nx, y + 1, nz)) {
+                    ny = y + 1;
+                } else {
+                    continue;
+                }
+
+                int offsetX = (nx >> 4) - sectionX, offsetY = (ny >> 4) - sectionY, offsetZ = (nz >> 4) - sectionZ;
+                int direction = (offsetX + 1) * 9 + (offsetY + 1) * 3 + (offsetZ + 1);
+                if (direction == SELF && y - ny <= 1) continue; // Same region by construction
+
+                SectionRegions target = direction == SELF ? regions : getRegions(nx >> 4, ny >> 4, nz >> 4);
+                if (target == null) continue;
+
+                int targetRegion = target.labels[NavGrid.Section.index(nx, ny, nz)];
+                if (targetRegion == NONE || (target == regions && targetRegion == region)) continue;
+
+                int link = direction << 7 | targetRegion;
+                if (!regions.links[region].contains(link)) {
+                    regions.links[region].add(link);
+                }
+            }
+        }
+        regions.linked = !budgetHit;
+        budgetHit |= budgetHitBefore;
+    }
+
+    private static class SectionRegions {
+        final long key;
+        final int serial; // Tells a rebuilt section apart from the one it replaced
+        final byte[] labels = new byte[4096];
+        int regionCount = 0;
+        long[] representative;
+        IntArrayList[] links; // direction << 7 | region, direction indexes the 3x3x3 neighbourhood
+        boolean linked = false;
+
+        SectionRegions(long key, int serial) {
+            this.key = key;
+            this.serial = serial;
+            Arrays.fill(labels, NONE);
+        }
+
+        int labelAt(long cell) {
+            return labels[NavGrid.Section.index(BlockPos.unpackLongX(cell), BlockPos.unpackLongY(cell), BlockPos.unpackLongZ(cell))];
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package org.pluginmakers.antiafkplusplus.client.path;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.block.Blocks;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.WorldChunk;
+import org.pluginmakers.antiafkplusplus.client.world.BlockClassifier;
+
+import java.util.Arrays;
+
+// Walkability of the loaded world as bitsets per 16x16x16 section: solid floor below, passable
+// at feet, passable at head, hazard and solid, one bit per block each. A section is built the
+// first time anything asks about it, kept up to date cell by cell on block updates and dropped
+// with its chunk. Client thread only; workers get copies through RegionSnapshot.
+public class NavGrid implements NavView {
+    private static final int FLOOR = 0;
+    private static final int FEET = 1;
+    private static final int HEAD = 2;
+    private static final int HAZARD = 3;
+    private static final int SOLID = 4;
+    private static final int LAYERS = 5;
+    private static final int WORDS_PER_LAYER = 4096 / 64;
+
+    private final MinecraftClient client;
+    private final Long2ObjectOpenHashMap<Section> sections = new Long2ObjectOpenHashMap<>();
+    private final BlockPos.Mutable probe = new BlockPos.Mutable();
+    // Classifier flags of the section plus one row above and below, reused by every build
+    private final int[] rows = new int[18 * 256];
+    private World builtWorld;
+    private long lastKey = Long.MIN_VALUE;
+    private Section lastSection;
+
+    private long sectionsBuilt = 0;
+    private long cellUpdates = 0;
+    private long sectionsDropped = 0;
+
+    public NavGrid(MinecraftClient client) {
+        this.client = client;
+    }
+
+    @Override
+    public int flags(int x, int y, int z) {
+        Section section = getSection(x >> 4, y >> 4, z >> 4);
+        return section == null ? 0 : section.flags(Section.index(x, y, z));
+    }
+
+    @Override
+    public boolean isPassable(int x, int y, int z) {
+        Section section = getSection(x >> 4, y >> 4, z >> 4);
+        return section != null && section.isPassable(Section.index(x, y, z));
+    }
+
+    @Override
+    public boolean canStand(int x, int y, int z) {
+        Section section = getSection(x >> 4, y >> 4, z >> 4);
+        return section != null && section.canStand(Section.index(x, y, z));
+    }
+
+    // Builds the section on first use, null where the chunk is not loaded or outside the world
+    public Section getSection(int sectionX, int sectionY, int sectionZ) {
+        World world = client.world;
+        if (world != builtWorld) {
+            clear();
+            builtWorld = world;
+        }
+        if (world == null) return null;
+
+        long key = ChunkSectionPos.asLong(sectionX, sectionY, sectionZ);
+        if (key == lastKey) return lastSection;
+
+        Section section = sections.get(key);
+        if (section == null) {
+            section = build(world, sectionX, sectionY, sectionZ);
+            if (section == null) return null;
+            sections.put(key, section);
+        }
+        lastKey = key;
+        lastSection = section;
+        return section;
+    }
+
+    // Only what is already built, null otherwise; never reads blocks
+    public Section getBuiltSection(int sectionX, int sectionY, int sectionZ) {
+        if (client.world != builtWorld) return null;
+
+        long key = ChunkSectionPos.asLong(sectionX, sectionY, sectionZ);
+        return key == lastKey ? lastSection : sections.get(key);
+    }
+
+    // Standing heights of one column within a section, bit i set when local y i can be stood on
+    public int columnFloors(int x, int sectionY, int z) {
+        Section section = getSection(x >> 4, sectionY, z >> 4);
+        return section == null ? 0 : section.columnFloors(x, z);
+    }
+
+    // A block's own bits and the floor bit above it and head bit below it depend on it
+    public void onBlockChanged(BlockPos pos) {
+        World world = client.world;
+        if (world == null || world != builtWorld) return;
+
+        for (int y = pos.getY() - 1; y <= pos.getY() + 1; y++) {
+            Section section = sections.get(ChunkSectionPos.asLong(pos.getX() >> 4, y >> 4, pos.getZ() >> 4));
+            if (section == null) continue;
+
+            section.setCell(Section.index(pos.getX(), y, pos.getZ()),
+                classify(world, pos.getX(), y - 1, pos.getZ()),
+                classify(world, pos.getX(), y, pos.getZ()),
+                classify(world, pos.getX(), y + 1, pos.getZ()));
+            cellUpdates++;
+        }
+    }
+
+    // Dropped on load as well, a reloaded chunk may differ from what was cached before it left
+    public void onChunkChanged(int chunkX, int chunkZ) {
+        World world = client.world;
+        if (world == null) return;
+
+        int bottom = world.getBottomSectionCoord();
+        int top = world.getTopSectionCoord();
+        for (int sectionY = bottom; sectionY < top; sectionY++) {
+            if (sections.remove(ChunkSectionPos.asLong(chunkX, sectionY, chunkZ)) != null) {
+                sectionsDropped++;
+            }
+        }
+        lastKey = Long.MIN_VALUE;
+        lastSection = null;
+    }
+
+    public void clear() {
+        sectionsDropped += sections.size();
+        sections.clear();
+        lastKey = Long.MIN_VALUE;
+        lastSection = null;
+    }
+
+    public String getStatsSummary() {
+        long kilobytes = (long) sections.size() * (LAYERS * WORDS_PER_LAYER * 8 + 256 * 2) / 1024;
+        return "nav grid: " + sections.size() + " sections (" + kilobytes + " KB), " + sectionsBuilt + " built, "
+            + cellUpdates + " cell updates, " + sectionsDropped + " dropped";
+    }
+
+    private Section build(World world, int sectionX, int sectionY, int sectionZ) {
+        if (sectionY < world.getBottomSectionCoord() || sectionY >= world.getTopSectionCoord()) return null;
+
+        WorldChunk chunk = world.getChunkManager().getWorldChunk(sectionX, sectionZ);
+        if (chunk == null) return null;
+
+        int baseY = sectionY << 4;
+        for (int row = 0; row < 18; row++) {
+            fillRow(world, chunk, baseY - 1 + row, row * 256);
+        }
+
+        Section section = new Section();
+        for (int index = 0; index < 4096; index++) {
+            int cell = (index >> 8) + 1;
+            int column = index & 255;
+            section.setCell(index, rows[(cell - 1) * 256 + column], rows[cell * 256 + column], rows[(cell + 1) * 256 + column]);
+        }
+        sectionsBuilt++;
+        return section;
+    }
+
+    private void fillRow(World world, WorldChunk chunk, int y, int offset) {
+        if (y < world.getBottomY()) {
+            Arrays.fill(rows, offset, offset + 256, 0);
+            return;
+        }
+        if (y > world.getTopYInclusive()) {
+            Arrays.fill(rows, offset, offset + 256, BlockClassifier.PASSABLE); // Open sky
+            return;
+        }
+
+        ChunkSection section = chunk.getSection(chunk.getSectionIndex(y));
+        if (section.isEmpty()) {
+            Arrays.fill(rows, offset, offset + 256, BlockClassifier.flags(Blocks.AIR.getDefaultState()));
+            return;
+        }
+        int localY = y & 15;
+        for (int column = 0; column < 256; column++) {
+            rows[offset + column] = BlockClassifier.flags(section.getBlockState(column & 15, localY, column >> 4));
+        }
+    }
+
+    private int classify(World world, int x, int y, int z) {
+        if (y < world.getBottomY()) return 0;
+        if (y > world.getTopYInclusive()) return BlockClassifier.PASSABLE;
+        return BlockClassifier.flags(world.getBlockState(probe.set(x, y, z)));
+    }
+
+    // Bits of one section, indexed y << 8 | z << 4 | x in local coordinates, plus the standing
+    // bits regrouped per column so a column's floors are one lookup
+    public static class Section {
+        private final long[] bits;
+        private final char[] floors;
+
+        Section() {
+            bits = new long[LAYERS * WORDS_PER_LAYER];
+            floors = new char[256];
+        }
+
+        private Section(long[] bits, char[] floors) {
+            this.bits = bits;
+            this.floors = floors;
+        }
+
+        public Section copy() {
+            return new Section(bits.clone(), floors.clone());
+        }
+
+        static int index(int x, int y, int z) {
+            return (y & 15) << 8 | (z & 15) << 4 | (x & 15);
+        }
+
+        int flags(int index) {
+            int flags = 0;
+            if (test(FEET, index)) flags |= BlockClassifier.PASSABLE;
+            if (test(SOLID, index)) flags |= BlockClassifier.SOLID;
+            if (test(HAZARD, index)) flags |= BlockClassifier.HAZARD;
+            return flags;
+        }
+
+        boolean isPassable(int index) {
+            return test(FEET, index);
+        }
+
+        boolean canStand(int index) {
+            int word = index >>> 6;
+            long mask = 1L << index;
+            return (bits[FLOOR * WORDS_PER_LAYER + word] & bits[FEET * WORDS_PER_LAYER + word]
+                & bits[HEAD * WORDS_PER_LAYER + word] & mask) != 0;
+        }
+
+        void setCell(int index, int below, int cell, int above) {
+            set(FLOOR, index, (below & BlockClassifier.SOLID) != 0 && (below & BlockClassifier.HAZARD) == 0);
+            set(FEET, index, (cell & BlockClassifier.PASSABLE) != 0);
+            set(HEAD, index, (above & BlockClassifier.PASSABLE) != 0);
+            set(HAZARD, index, (cell & BlockClassifier.HAZARD) != 0);
+            set(SOLID, index, (cell & BlockClassifier.SOLID) != 0);
+
+            int column = index & 255;
+            int bit = 1 << (index >> 8);
+            floors[column] = (char) (canStand(index) ? floors[column] | bit : floors[column] & ~bit);
+        }
+
+        int columnFloors(int x, int z) {
+            return floors[(z & 15) << 4 | (x & 15)];
+        }
+
+        private boolean test(int layer, int index) {
+            return (bits[layer * WORDS_PER_LAYER + (index >>> 6)] & (1L << index)) != 0;
+        }
+
+        private void set(int layer, int index, boolean value) {
+            int word = layer * WORDS_PER_LAYER + (index >>> 6);
+            if (value) {
+                bits[word] |= 1L << index;
+            } else {
+                bits[word] &= ~(1L << index);
+            }
+        }
+    }
+}
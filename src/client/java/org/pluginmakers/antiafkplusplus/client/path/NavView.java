@@ -0,0 +1,21 @@
+package org.pluginmakers.antiafkplusplus.client.path;
+
+import org.pluginmakers.antiafkplusplus.client.world.BlockClassifier;
+
+// Block walkability as the pathfinder sees it
+public interface NavView {
+    // BlockClassifier SOLID, PASSABLE and HAZARD bits of the block, 0 where nothing is known
+    int flags(int x, int y, int z);
+
+    // Nothing to collide with and nothing that hurts
+    default boolean isPassable(int x, int y, int z) {
+        return (flags(x, y, z) & BlockClassifier.PASSABLE) != 0;
+    }
+
+    // Feet and head fit at y and the floor below is solid and safe to stand on
+    default boolean canStand(int x, int y, int z) {
+        int floor = flags(x, y - 1, z);
+        return (floor & BlockClassifier.SOLID) != 0 && (floor & BlockClassifier.HAZARD) == 0
+            && isPassable(x, y, z) && isPassable(x, y + 1, z);
+    }
+}
@@ -0,0 +1,107 @@
+package org.pluginmakers.antiafkplusplus.client.path;
+
+import java.util.Arrays;
+
+// Binary min-heap of node ids keyed by float priority, with decrease-key through a position table
+class NodeHeap {
+    private int[] heap;
+    private float[] priority;
+    private int[] position; // Index of the node in heap, -1 when it is not queued
+    private int size = 0;
+
+    NodeHeap(int capacity) {
+        heap = new int[capacity];
+        priority = new float[capacity];
+        position = new int[capacity];
+        Arrays.fill(position, -1);
+    }
+
+    void ensureCapacity(int capacity) {
+        if (capacity <= heap.length) return;
+
+        int oldLength = heap.length;
+        heap = Arrays.copyOf(heap, capacity);
+        priority = Arrays.copyOf(priority, capacity);
+        position = Arrays.copyOf(position, capacity);
+        Arrays.fill(position, oldLength, capacity, -1);
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    boolean contains(int node) {
+        return position[node] != -1;
+    }
+
+    // Inserts the node or lowers its priority if it is already queued
+    void offer(int node, float key) {
+        int index = position[node];
+        if (index == -1) {
+            index = size++;
+            heap[index] = node;
+            position[node] = index;
+            priority[node] = key;
+            siftUp(index);
+        } else if (key < priority[node]) {
+            priority[node] = key;
+            siftUp(index);
+        }
+    }
+
+    int poll() {
+        int top = heap[0];
+        position[top] = -1;
+        size--;
+        if (size > 0) {
+            heap[0] = heap[size];
+            position[heap[0]] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    void clear() {
+        for (int i = 0; i < size; i++) {
+            position[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private void siftUp(int index) {
+        int node = heap[index];
+        float key = priority[node];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            int parentNode = heap[parent];
+            if (priority[parentNode] <= key) break;
+
+            heap[index] = parentNode;
+            position[parentNode] = index;
+            index = parent;
+        }
+        heap[index] = node;
+        position[node] = index;
+    }
+
+    private void siftDown(int index) {
+        int node = heap[index];
+        float key = priority[node];
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            int right = child + 1;
+            if (right < size && priority[heap[right]] < priority[heap[child]]) {
+                child = right;
+            }
+            int childNode = heap[child];
+            if (key <= priority[childNode]) break;
+
+            heap[index] = childNode;
+            position[childNode] = index;
+            index = child;
+        }
+        heap[index] = node;
+        position[node] = index;
+    }
+}
@@ -0,0 +1,97 @@
+package org.pluginmakers.antiafkplusplus.client.path;
+
+import net.minecraft.util.math.BlockPos;
+
+// Standing positions from start to goal, packed with BlockPos.asLong, and a cursor for the follower
+public class Path {
+    public enum Result {
+        FOUND, PARTIAL, FAILED
+    }
+
+    private final long[] nodes;
+    private final Result result;
+    private int cursor = 0;
+    // What the search that produced the path spent, 0 for paths not straight from a search
+    private int searchNodes;
+    private long searchNanos;
+
+    public Path(long[] nodes, Result result) {
+        this.nodes = nodes;
+        this.result = result;
+    }
+
+    public Result getResult() {
+        return result;
+    }
+
+    public int getSearchNodes() {
+        return searchNodes;
+    }
+
+    public long getSearchNanos() {
+        return searchNanos;
+    }
+
+    void setSearchCost(int nodes, long nanos) {
+        searchNodes = nodes;
+        searchNanos = nanos;
+    }
+
+    public int size() {
+        return nodes.length;
+    }
+
+    public long get(int index) {
+        return nodes[index];
+    }
+
+    public int getCursor() {
+        return cursor;
+    }
+
+    public boolean isDone() {
+        return cursor >= nodes.length;
+    }
+
+    public long current() {
+        return nodes[cursor];
+    }
+
+    public void advance() {
+        cursor++;
+    }
+
+    public int currentX() {
+        return BlockPos.unpackLongX(nodes[cursor]);
+    }
+
+    public int currentY() {
+        return BlockPos.unpackLongY(nodes[cursor]);
+    }
+
+    public int currentZ() {
+        return BlockPos.unpackLongZ(nodes[cursor]);
+    }
+
+    public int indexOf(long node, int from) {
+        for (int i = from; i < nodes.length; i++) {
+            if (nodes[i] == node) return i;
+        }
+        return -1;
+    }
+
+    // Replaces nodes (from, to] with the segment, which must end at the old node at to. With from
+    // at -1 the segment starts where the player stands and the walked prefix is dropped.
+    public Path splice(int from, int to, Path segment) {
+        int prefix = from + 1;
+        int suffix = nodes.length - to - 1;
+        long[] spliced = new long[prefix + segment.nodes.length + suffix];
+        System.arraycopy(nodes, 0, spliced, 0, prefix);
+        System.arraycopy(segment.nodes, 0, spliced, prefix, segment.nodes.length);
+        System.arraycopy(nodes, to + 1, spliced, prefix + segment.nodes.length, suffix);
+
+        Path repaired = new Path(spliced, result);
+        repaired.cursor = from == -1 ? 0 : Math.min(cursor, prefix);
+        return repaired;
+    }
+}
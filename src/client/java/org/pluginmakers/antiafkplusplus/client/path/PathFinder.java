@@ -0,0 +1,257 @@
+package org.pluginmakers.antiafkplusplus.client.path;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import net.minecraft.util.math.BlockPos;
+
+import java.util.Arrays;
+import java.util.function.BooleanSupplier;
+
+// A* over standing positions. A move is a walk to a neighbouring column (diagonals only when
+// both corners are clear), a one block jump up, or a step off an edge that drops at most
+// MAX_FALL blocks. Nodes are packed positions mapped to slots in flat arrays, and the open set
+// is a primitive heap over those slots. Each search is bounded by node count and time; when a
+// bound is hit the path to the node closest to the goal is returned as PARTIAL.
+public class PathFinder {
+    public static final int MAX_FALL = 3;
+
+    private static final float WALK_COST = 1.0f;
+    private static final float DIAGONAL_COST = 1.4142f;
+    private static final float JUMP_COST = 2.0f;
+    private static final float FALL_COST_PER_BLOCK = 0.5f;
+    private static final int TIME_CHECK_MASK = 63;
+    private static final int[] CARDINAL_X = {1, -1, 0, 0};
+    private static final int[] CARDINAL_Z = {0, 0, 1, -1};
+
+    private final Long2IntOpenHashMap slots = new Long2IntOpenHashMap();
+    private NodeHeap open;
+    private long[] positions;
+    private float[] cost;
+    private int[] parent;
+    private boolean[] closed;
+    private int nodeCount;
+
+    private long searches = 0;
+    private long found = 0;
+    private long partial = 0;
+    private long failed = 0;
+    private long totalNodes = 0;
+    private long totalNanos = 0;
+    private long maxNanos = 0;
+    private int lastNodes = 0;
+    private long lastNanos = 0;
+
+    public PathFinder() {
+        slots.defaultReturnValue(-1);
+        allocate(1024);
+    }
+
+    // Goal is reached by any standing position within sqrt(goalRangeSq) blocks of the goal block
+    public Path search(NavView view, int startX, int startY, int startZ, int goalX, int goalY, int goalZ,
+                       int goalRangeSq, int maxNodes, long maxNanosPerSearch) {
+        return search(view, startX, startY, startZ, goalX, goalY, goalZ, goalRangeSq, maxNodes, maxNanosPerSearch, () -> false);
+    }
+
+    // Checks cancelled alongside the time budget and gives up with FAILED once it returns true
+    public Path search(NavView view, int startX, int startY, int startZ, int goalX, int goalY, int goalZ,
+                       int goalRangeSq, int maxNodes, long maxNanosPerSearch, BooleanSupplier cancelled) {
+        long started = System.nanoTime();
+        reset(maxNodes);
+
+        startY = resolveStart(view, startX, startY, startZ);
+        int startSlot = addNode(BlockPos.asLong(startX, startY, startZ), -1, 0.0f);
+        open.offer(startSlot, heuristic(startX, startZ, goalX, goalZ));
+
+        int bestSlot = startSlot;
+        float bestHeuristic = heuristic(startX, startZ, goalX, goalZ);
+        int goalSlot = -1;
+        int expanded = 0;
+        boolean aborted = false;
+
+        while (!open.isEmpty()) {
+            if ((expanded & TIME_CHECK_MASK) == 0 && expanded > 0) {
+                if (cancelled.getAsBoolean()) {
+                    aborted = true;
+                    break;
+                }
+                if (System.nanoTime() - started > maxNanosPerSearch) break;
+            }
+
+            int slot = open.poll();
+            closed[slot] = true;
+            expanded++;
+
+            long pos = positions[slot];
+            int x = BlockPos.unpackLongX(pos);
+            int y = BlockPos.unpackLongY(pos);
+            int z = BlockPos.unpackLongZ(pos);
+
+            int gx = x - goalX, gy = y - goalY, gz = z - goalZ;
+            if (gx * gx + gy * gy + gz * gz <= goalRangeSq) {
+                goalSlot = slot;
+                break;
+            }
+
+            float h = heuristic(x, z, goalX, goalZ);
+            if (h < bestHeuristic) {
+                bestHeuristic = h;
+                bestSlot = slot;
+            }
+
+            if (nodeCount > maxNodes - 8) break; // An expansion adds up to eight nodes
+            expand(view, slot, x, y, z, goalX, goalZ);
+        }
+
+        Path.Result result;
+        int endSlot;
+        if (goalSlot != -1) {
+            result = Path.Result.FOUND;
+            endSlot = goalSlot;
+            found++;
+        } else if (bestSlot != startSlot && !aborted) {
+            result = Path.Result.PARTIAL;
+            endSlot = bestSlot;
+            partial++;
+        } else {
+            result = Path.Result.FAILED;
+            endSlot = -1;
+            failed++;
+        }
+
+        long elapsed = System.nanoTime() - started;
+        searches++;
+        lastNodes = nodeCount;
+        lastNanos = elapsed;
+        totalNodes += nodeCount;
+        totalNanos += elapsed;
+        maxNanos = Math.max(maxNanos, elapsed);
+
+        Path path = new Path(endSlot == -1 ? new long[0] : reconstruct(endSlot), result);
+        path.setSearchCost(nodeCount, elapsed);
+        return path;
+    }
+
+    public String getStatsSummary() {
+        long averageNodes = searches == 0 ? 0 : totalNodes / searches;
+        long averageMicros = searches == 0 ? 0 : totalNanos / searches / 1000;
+        return "paths: " + searches + " searches (" + found + " found, " + partial + " partial, " + failed + " failed), "
+            + averageNodes + " nodes / " + averageMicros + "us avg, max " + maxNanos / 1000 + "us, last "
+            + lastNodes + " nodes / " + lastNanos / 1000 + "us";
+    }
+
+    private void expand(NavView view, int slot, int x, int y, int z, int goalX, int goalZ) {
+        float base = cost[slot];
+        boolean headroom = view.isPassable(x, y + 2, z);
+
+        for (int i = 0; i < 4; i++) {
+            int nx = x + CARDINAL_X[i];
+            int nz = z + CARDINAL_Z[i];
+
+            if (view.canStand(nx, y, nz)) {
+                relax(slot, nx, y, nz, base + WALK_COST, goalX, goalZ);
+            } else if (view.isPassable(nx, y, nz) && view.isPassable(nx, y + 1, nz)) {
+                // Open edge, step off it if there is safe ground close enough below
+                for (int drop = 1; drop <= MAX_FALL; drop++) {
+                    if (view.canStand(nx, y - drop, nz)) {
+                        relax(slot, nx, y - drop, nz, base + WALK_COST + FALL_COST_PER_BLOCK * drop, goalX, goalZ);
+                        break;
+                    }
+                    if (!view.isPassable(nx, y - drop, nz)) break;
+                }
+            } else if (headroom && view.canStand(nx, y + 1, nz)) {
+                relax(slot, nx, y + 1, nz, base + JUMP_COST, goalX, goalZ);
+            }
+        }
+
+        // Diagonals only on level ground with both corners clear, so the hitbox never clips an edge
+        for (int dx = -1; dx <= 1; dx += 2) {
+            for (int dz = -1; dz <= 1; dz += 2) {
+                int nx = x + dx;
+                int nz = z + dz;
+                if (view.canStand(nx, y, nz)
+                    && view.isPassable(nx, y, z) && view.isPassable(nx, y + 1, z)
+                    && view.isPassable(x, y, nz) && view.isPassable(x, y + 1, nz)) {
+                    relax(slot, nx, y, nz, base + DIAGONAL_COST, goalX, goalZ);
+                }
+            }
+        }
+    }
+
+    private void relax(int fromSlot, int x, int y, int z, float newCost, int goalX, int goalZ) {
+        long pos = BlockPos.asLong(x, y, z);
+        int slot = slots.get(pos);
+        if (slot == -1) {
+            slot = addNode(pos, fromSlot, newCost);
+        } else if (closed[slot] || newCost >= cost[slot]) {
+            return;
+        } else {
+            cost[slot] = newCost;
+            parent[slot] = fromSlot;
+        }
+        open.offer(slot, newCost + heuristic(x, z, goalX, goalZ));
+    }
+
+    // Octile distance, admissible because every move costs at least its horizontal length
+    private static float heuristic(int x, int z, int goalX, int goalZ) {
+        int dx = Math.abs(x - goalX);
+        int dz = Math.abs(z - goalZ);
+        int straight = Math.abs(dx - dz);
+        return straight * WALK_COST + Math.min(dx, dz) * DIAGONAL_COST;
+    }
+
+    // The player's block is not always a standing position: mid jump, on a slab or while falling
+    private static int resolveStart(NavView view, int x, int y, int z) {
+        if (view.canStand(x, y, z)) return y;
+        if (view.canStand(x, y + 1, z)) return y + 1;
+        for (int drop = 1; drop <= MAX_FALL; drop++) {
+            if (view.canStand(x, y - drop, z)) return y - drop;
+        }
+        return y;
+    }
+
+    private int addNode(long pos, int parentSlot, float nodeCost) {
+        if (nodeCount == positions.length) {
+            allocate(positions.length * 2);
+        }
+        int slot = nodeCount++;
+        positions[slot] = pos;
+        cost[slot] = nodeCost;
+        parent[slot] = parentSlot;
+        closed[slot] = false;
+        slots.put(pos, slot);
+        return slot;
+    }
+
+    private long[] reconstruct(int endSlot) {
+        int length = 0;
+        for (int slot = endSlot; slot != -1; slot = parent[slot]) length++;
+
+        // The start node is where the player already stands, leave it out
+        long[] nodes = new long[length - 1];
+        int index = nodes.length - 1;
+        for (int slot = endSlot; parent[slot] != -1; slot = parent[slot]) {
+            nodes[index--] = positions[slot];
+        }
+        return nodes;
+    }
+
+    private void reset(int maxNodes) {
+        slots.clear();
+        open.clear();
+        nodeCount = 0;
+        if (positions.length < Math.min(maxNodes, 1 << 16)) {
+            allocate(Math.min(maxNodes, 1 << 16));
+        }
+    }
+
+    private void allocate(int capacity) {
+        positions = positions == null ? new long[capacity] : Arrays.copyOf(positions, capacity);
+        cost = cost == null ? new float[capacity] : Arrays.copyOf(cost, capacity);
+        parent = parent == null ? new int[capacity] : Arrays.copyOf(parent, capacity);
+        closed = closed == null ? new boolean[capacity] : Arrays.copyOf(closed, capacity);
+        if (open == null) {
+            open = new NodeHeap(capacity);
+        } else {
+            open.ensureCapacity(capacity);
+        }
+    }
+}
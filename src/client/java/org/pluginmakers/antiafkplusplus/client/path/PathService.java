@@ -0,0 +1,135 @@
+package org.pluginmakers.antiafkplusplus.client.path;
+
+import net.minecraft.client.MinecraftClient;
+import org.pluginmakers.antiafkplusplus.client.config.AntiAFKConfig;
+import org.pluginmakers.antiafkplusplus.client.scheduler.TickScheduler;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+// Runs path searches on a worker thread. The client thread copies the block region a search
+// needs, the worker searches the copy, and the result comes back through the scheduler's
+// inbox. Every request gets a generation; a newer request or cancel() makes older ones stale,
+// so the worker stops them early and their results are dropped instead of delivered.
+public class PathService {
+    // Room around the start and goal for detours, and below them for falls
+    private static final int MARGIN_XZ = 12;
+    private static final int MARGIN_Y = 6;
+    private static final int MAX_SPAN_XZ = 160;
+    // A flat search over a whole long trip gets this many times the normal allowance
+    private static final int SAMPLE_ALLOWANCE = 4;
+
+    private final MinecraftClient client;
+    private final TickScheduler scheduler;
+    private final NavGrid navGrid;
+    private final AntiAFKConfig config;
+    private final PathFinder finder = new PathFinder(); // Worker thread only
+    private final PathFinder sampleFinder = new PathFinder(); // Worker thread only, kept out of the stats above
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "AntiAFK Path Worker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile int generation = 0;
+
+    private long requests = 0;
+    private long delivered = 0;
+    private long superseded = 0;
+    private long snapshotNanos = 0;
+    private long snapshotSections = 0;
+    private long snapshotUnknown = 0;
+
+    public PathService(MinecraftClient client, TickScheduler scheduler, NavGrid navGrid) {
+        this.client = client;
+        this.scheduler = scheduler;
+        this.navGrid = navGrid;
+        this.config = AntiAFKConfig.getInstance();
+    }
+
+    // Client thread. onResult runs on the client thread, and only if no newer request was made.
+    // Returns -1 without a world, nothing is searched then and older requests are still cancelled
+    public int request(int startX, int startY, int startZ, int goalX, int goalY, int goalZ, int goalRangeSq,
+                       Consumer<Path> onResult) {
+        int requestGeneration = ++generation;
+        if (client.world == null) return -1;
+
+        long started = System.nanoTime();
+        int minX = clampSpan(Math.min(startX, goalX) - MARGIN_XZ, startX, true);
+        int maxX = clampSpan(Math.max(startX, goalX) + MARGIN_XZ, startX, false);
+        int minZ = clampSpan(Math.min(startZ, goalZ) - MARGIN_XZ, startZ, true);
+        int maxZ = clampSpan(Math.max(startZ, goalZ) + MARGIN_XZ, startZ, false);
+        int minY = Math.min(startY, goalY) - MARGIN_Y;
+        int maxY = Math.max(startY, goalY) + MARGIN_Y;
+        RegionSnapshot snapshot = RegionSnapshot.capture(navGrid, startX, startY, startZ, minX, minY, minZ, maxX, maxY, maxZ);
+        snapshotNanos += System.nanoTime() - started;
+        snapshotSections += snapshot.getSectionCount();
+        snapshotUnknown += snapshot.getUnknownSectionCount();
+        requests++;
+
+        int maxNodes = config.pathMaxNodes;
+        long budget = config.pathBudgetNanos;
+        worker.execute(() -> {
+            if (generation != requestGeneration) return;
+
+            Path path = finder.search(snapshot, startX, startY, startZ, goalX, goalY, goalZ, goalRangeSq, maxNodes, budget,
+                () -> generation != requestGeneration);
+            scheduler.submit(() -> deliver(requestGeneration, path, onResult));
+        });
+        return requestGeneration;
+    }
+
+    // Client thread. A search that is only measured, for comparing against the hierarchical
+    // planner: it takes no generation, cancels nothing and is always delivered
+    public void sample(int startX, int startY, int startZ, int goalX, int goalY, int goalZ, Consumer<Path> onResult) {
+        if (client.world == null) return;
+
+        int minX = clampSpan(Math.min(startX, goalX) - MARGIN_XZ, startX, true);
+        int maxX = clampSpan(Math.max(startX, goalX) + MARGIN_XZ, startX, false);
+        int minZ = clampSpan(Math.min(startZ, goalZ) - MARGIN_XZ, startZ, true);
+        int maxZ = clampSpan(Math.max(startZ, goalZ) + MARGIN_XZ, startZ, false);
+        int minY = Math.min(startY, goalY) - MARGIN_Y;
+        int maxY = Math.max(startY, goalY) + MARGIN_Y;
+        RegionSnapshot snapshot = RegionSnapshot.capture(navGrid, startX, startY, startZ, minX, minY, minZ, maxX, maxY, maxZ);
+
+        int maxNodes = config.pathMaxNodes * SAMPLE_ALLOWANCE;
+        long budget = config.pathBudgetNanos * SAMPLE_ALLOWANCE;
+        worker.execute(() -> {
+            Path path = sampleFinder.search(snapshot, startX, startY, startZ, goalX, goalY, goalZ, 0, maxNodes, budget);
+            scheduler.submit(() -> onResult.accept(path));
+        });
+    }
+
+    public boolean isCurrent(int requestGeneration) {
+        return generation == requestGeneration;
+    }
+
+    // Makes every outstanding request stale
+    public void cancel() {
+        generation++;
+    }
+
+    public String getStatsSummary() {
+        long averageSnapshotMicros = requests == 0 ? 0 : snapshotNanos / requests / 1000;
+        long averageSections = requests == 0 ? 0 : snapshotSections / requests;
+        return finder.getStatsSummary() + "\n" + "path worker: " + requests + " requests, " + delivered + " delivered, "
+            + superseded + " superseded, snapshot " + averageSections + " sections / " + averageSnapshotMicros + "us avg, "
+            + snapshotUnknown + " sections left unknown";
+    }
+
+    private void deliver(int requestGeneration, Path path, Consumer<Path> onResult) {
+        if (generation != requestGeneration) {
+            superseded++;
+            return;
+        }
+        delivered++;
+        onResult.accept(path);
+    }
+
+    // Far goals are cut off at MAX_SPAN_XZ from the start, the search then returns a partial path
+    private static int clampSpan(int bound, int start, boolean lower) {
+        int limit = MAX_SPAN_XZ / 2;
+        return lower ? Math.max(bound, start - limit) : Math.min(bound, start + limit);
+    }
+}
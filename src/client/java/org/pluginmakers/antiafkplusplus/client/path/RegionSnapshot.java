@@ -0,0 +1,112 @@
+package org.pluginmakers.antiafkplusplus.client.path;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import net.minecraft.util.math.ChunkSectionPos;
+
+// Walkability of a box of blocks, copied on the client thread so a worker can search it while
+// the world keeps changing. Copies the nav grid sections the box touches, a few kilobytes each,
+// and answers only for blocks inside the box. Building a missing section reads thousands of
+// blocks, so one capture builds at most MAX_BUILDS of them, those nearest the start first; the
+// rest count as unknown and nothing walks through them until a later capture has them.
+public class RegionSnapshot implements NavView {
+    private static final int MAX_BUILDS = 4;
+
+    private final int minX, minY, minZ;
+    private final int maxX, maxY, maxZ;
+    private final Long2ObjectOpenHashMap<NavGrid.Section> sections = new Long2ObjectOpenHashMap<>();
+    private long lastKey = Long.MIN_VALUE;
+    private NavGrid.Section lastSection;
+    private int unknownSections = 0;
+
+    private RegionSnapshot(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        this.minX = minX;
+        this.minY = minY;
+        this.minZ = minZ;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        this.maxZ = maxZ;
+    }
+
+    // Unloaded sections are left out as well, nothing walks through them
+    public static RegionSnapshot capture(NavGrid grid, int startX, int startY, int startZ,
+                                         int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        RegionSnapshot snapshot = new RegionSnapshot(minX, minY, minZ, maxX, maxY, maxZ);
+        LongArrayList missing = new LongArrayList();
+        for (int sectionX = minX >> 4; sectionX <= maxX >> 4; sectionX++) {
+            for (int sectionZ = minZ >> 4; sectionZ <= maxZ >> 4; sectionZ++) {
+                for (int sectionY = minY >> 4; sectionY <= maxY >> 4; sectionY++) {
+                    NavGrid.Section section = grid.getBuiltSection(sectionX, sectionY, sectionZ);
+                    if (section != null) {
+                        snapshot.sections.put(ChunkSectionPos.asLong(sectionX, sectionY, sectionZ), section.copy());
+                    } else {
+                        missing.add(ChunkSectionPos.asLong(sectionX, sectionY, sectionZ));
+                    }
+                }
+            }
+        }
+
+        // Nearest to the start first, that is where the search spends its first expansions
+        int startSectionX = startX >> 4, startSectionY = startY >> 4, startSectionZ = startZ >> 4;
+        missing.sort((a, b) -> Long.compare(
+            sectionDistanceSq(a, startSectionX, startSectionY, startSectionZ),
+            sectionDistanceSq(b, startSectionX, startSectionY, startSectionZ)));
+        for (int i = 0; i < missing.size(); i++) {
+            long key = missing.getLong(i);
+            NavGrid.Section section = i < MAX_BUILDS
+                ? grid.getSection(ChunkSectionPos.unpackX(key), ChunkSectionPos.unpackY(key), ChunkSectionPos.unpackZ(key))
+                : null;
+            if (section != null) {
+                snapshot.sections.put(key, section.copy());
+            } else if (i >= MAX_BUILDS) {
+                snapshot.unknownSections++;
+            }
+        }
+        return snapshot;
+    }
+
+    @Override
+    public int flags(int x, int y, int z) {
+        NavGrid.Section section = section(x, y, z);
+        return section == null ? 0 : section.flags(NavGrid.Section.index(x, y, z));
+    }
+
+    @Override
+    public boolean isPassable(int x, int y, int z) {
+        NavGrid.Section section = section(x, y, z);
+        return section != null && section.isPassable(NavGrid.Section.index(x, y, z));
+    }
+
+    @Override
+    public boolean canStand(int x, int y, int z) {
+        NavGrid.Section section = section(x, y, z);
+        return section != null && section.canStand(NavGrid.Section.index(x, y, z));
+    }
+
+    public int getSectionCount() {
+        return sections.size();
+    }
+
+    // Sections left out because the capture's build allowance ran out
+    public int getUnknownSectionCount() {
+        return unknownSections;
+    }
+
+    private static long sectionDistanceSq(long key, int sectionX, int sectionY, int sectionZ) {
+        long dx = ChunkSectionPos.unpackX(key) - sectionX;
+        long dy = ChunkSectionPos.unpackY(key) - sectionY;
+        long dz = ChunkSectionPos.unpackZ(key) - sectionZ;
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    private NavGrid.Section section(int x, int y, int z) {
+        if (x < minX || y < minY || z < minZ || x > maxX || y > maxY || z > maxZ) return null;
+
+        long key = ChunkSectionPos.asLong(x >> 4, y >> 4, z >> 4);
+        if (key != lastKey) {
+            lastKey = key;
+            lastSection = sections.get(key);
+        }
+        return lastSection;
+    }
+}
@@ -0,0 +1,114 @@
+package org.pluginmakers.antiafkplusplus.client.scheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Runs the manager's subsystems on a tick counter, each at its own cadence. A subsystem runs
+// on the ticks where tick % period == phase; within a tick they run in priority order, lowest
+// first. Phases are picked at registration so that costly subsystems with long periods land
+// on ticks shared with as little other costly work as possible. A subsystem that throws only
+// loses its own turn.
+public class SubsystemScheduler {
+    public static final int CHEAP = 1;
+    public static final int COSTLY = 4;
+
+    private final List<Subsystem> subsystems = new ArrayList<>();
+    private long currentTick = 0;
+
+    public void register(String name, int periodTicks, int priority, int cost, Runnable action) {
+        int period = Math.max(1, periodTicks);
+        Subsystem subsystem = new Subsystem(name, period, choosePhase(period, cost), priority, cost, action);
+
+        int index = 0;
+        while (index < subsystems.size() && subsystems.get(index).priority <= priority) index++;
+        subsystems.add(index, subsystem);
+    }
+
+    public void tick() {
+        currentTick++;
+        for (int i = 0; i < subsystems.size(); i++) {
+            Subsystem subsystem = subsystems.get(i);
+            if (currentTick % subsystem.period != subsystem.phase) continue;
+
+            long started = System.nanoTime();
+            try {
+                subsystem.action.run();
+            } catch (Exception e) {
+                e.printStackTrace();
+                subsystem.failures++;
+            }
+            subsystem.runs++;
+            subsystem.totalNanos += System.nanoTime() - started;
+        }
+    }
+
+    public String getStatsSummary() {
+        StringBuilder builder = new StringBuilder("subsystems (tick ").append(currentTick).append("):");
+        for (Subsystem subsystem : subsystems) {
+            long averageMicros = subsystem.runs == 0 ? 0 : subsystem.totalNanos / subsystem.runs / 1000;
+            builder.append("\n  ").append(subsystem.name).append(" every ").append(subsystem.period)
+                .append("t @").append(subsystem.phase).append(": ").append(subsystem.runs).append(" runs, ")
+                .append(averageMicros).append("us avg");
+            if (subsystem.failures > 0) {
+                builder.append(", ").append(subsystem.failures).append(" failed");
+            }
+        }
+        return builder.toString();
+    }
+
+    // Phase whose ticks overlap the least registered cost. Phase p of period P meets phase q of
+    // period Q on some tick when p and q agree modulo gcd(P, Q), and then on gcd(P, Q) / Q of
+    // its own runs
+    private int choosePhase(int period, int cost) {
+        if (period == 1 || cost < COSTLY) return 0;
+
+        int bestPhase = 0;
+        double bestLoad = Double.MAX_VALUE;
+        for (int phase = 0; phase < period; phase++) {
+            double load = 0;
+            for (Subsystem other : subsystems) {
+                if (other.cost < COSTLY) continue;
+
+                int gcd = gcd(period, other.period);
+                if ((phase - other.phase) % gcd == 0) {
+                    load += other.cost * (double) gcd / other.period;
+                }
+            }
+            if (load < bestLoad) {
+                bestLoad = load;
+                bestPhase = phase;
+            }
+        }
+        return bestPhase;
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    private static class Subsystem {
+        final String name;
+        final int period;
+        final int phase;
+        final int priority;
+        final int cost;
+        final Runnable action;
+        long runs = 0;
+        long failures = 0;
+        long totalNanos = 0;
+
+        Subsystem(String name, int period, int phase, int priority, int cost, Runnable action) {
+            this.name = name;
+            this.period = period;
+            this.phase = phase;
+            this.priority = priority;
+            this.cost = cost;
+            this.action = action;
+        }
+    }
+}
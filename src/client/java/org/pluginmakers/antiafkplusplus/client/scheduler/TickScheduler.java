@@ -0,0 +1,130 @@
+package org.pluginmakers.antiafkplusplus.client.scheduler;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// Runs delayed and repeating work on the client thread, driven by the client tick instead of
+// sleeping threads. Delays are given in milliseconds and rounded up to whole ticks, so a task
+// never runs in the tick that scheduled it. schedule* must be called on the client thread;
+// other threads hand results back through submit(), which is drained at the start of a tick.
+public class TickScheduler {
+    public static final long TICK_MILLIS = 50;
+
+    private final PriorityQueue<Task> queue = new PriorityQueue<>();
+    private final ConcurrentLinkedQueue<Runnable> inbox = new ConcurrentLinkedQueue<>();
+    private long currentTick = 0;
+    private long sequence = 0;
+
+    private long tasksRun = 0;
+    private long tasksCancelled = 0;
+    private long submittedRun = 0;
+
+    public Task schedule(long delayMillis, Runnable action) {
+        return enqueue(new Task(action, 0), delayMillis);
+    }
+
+    public Task scheduleRepeating(long delayMillis, long periodMillis, Runnable action) {
+        return enqueue(new Task(action, toTicks(periodMillis)), delayMillis);
+    }
+
+    // Safe to call from any thread, the action runs on the client thread next tick
+    public void submit(Runnable action) {
+        inbox.add(action);
+    }
+
+    public void tick() {
+        currentTick++;
+
+        Runnable submitted;
+        while ((submitted = inbox.poll()) != null) {
+            run(submitted);
+            submittedRun++;
+        }
+
+        while (!queue.isEmpty() && queue.peek().dueTick <= currentTick) {
+            Task task = queue.poll();
+            if (task.cancelled) {
+                tasksCancelled++;
+                continue;
+            }
+
+            run(task.action);
+            tasksRun++;
+            if (task.periodTicks > 0 && !task.cancelled) {
+                task.dueTick = currentTick + task.periodTicks;
+                task.order = sequence++;
+                queue.add(task);
+            } else {
+                task.done = true;
+            }
+        }
+    }
+
+    // Drops every pending task and unprocessed worker result, used when the mod is disabled
+    public void cancelAll() {
+        for (Task task : queue) {
+            if (!task.cancelled) tasksCancelled++;
+            task.cancelled = true;
+        }
+        queue.clear();
+        inbox.clear();
+    }
+
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+    public String getStatsSummary() {
+        return "scheduler: " + queue.size() + " pending, " + tasksRun + " run, " + tasksCancelled + " cancelled, "
+            + submittedRun + " worker results";
+    }
+
+    private Task enqueue(Task task, long delayMillis) {
+        task.dueTick = currentTick + toTicks(delayMillis);
+        task.order = sequence++;
+        queue.add(task);
+        return task;
+    }
+
+    private static long toTicks(long millis) {
+        return Math.max(1, (millis + TICK_MILLIS - 1) / TICK_MILLIS);
+    }
+
+    private static void run(Runnable action) {
+        try {
+            action.run();
+        } catch (Exception e) {
+            // One failing task must not take the rest of the tick down with it
+            e.printStackTrace();
+        }
+    }
+
+    public static class Task implements Comparable<Task> {
+        private final Runnable action;
+        private final long periodTicks;
+        private long dueTick;
+        private long order;
+        private boolean cancelled = false;
+        private boolean done = false;
+
+        private Task(Runnable action, long periodTicks) {
+            this.action = action;
+            this.periodTicks = periodTicks;
+        }
+
+        public void cancel() {
+            cancelled = true;
+        }
+
+        // True until the task has run (one-shot) or was cancelled
+        public boolean isActive() {
+            return !cancelled && !done;
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            if (dueTick != other.dueTick) return Long.compare(dueTick, other.dueTick);
+            return Long.compare(order, other.order);
+        }
+    }
+}
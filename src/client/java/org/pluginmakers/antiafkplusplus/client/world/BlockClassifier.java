@@ -0,0 +1,132 @@
+package org.pluginmakers.antiafkplusplus.client.world;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.block.ChestBlock;
+import net.minecraft.block.FurnaceBlock;
+import net.minecraft.registry.tag.BlockTags;
+import net.minecraft.registry.tag.FluidTags;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.EmptyBlockView;
+import net.minecraft.world.World;
+import org.pluginmakers.antiafkplusplus.client.config.AntiAFKConfig;
+
+// Category bitmask per raw block state id. Built once per config change (or world change,
+// since tags are synced per server) so scans do a single array lookup per block.
+public final class BlockClassifier {
+    public static final int ORE_COAL = 1;
+    public static final int ORE_IRON = 1 << 1;
+    public static final int ORE_GOLD = 1 << 2;
+    public static final int ORE_DIAMOND = 1 << 3;
+    public static final int ORE_EMERALD = 1 << 4;
+    public static final int ORE_REDSTONE = 1 << 5;
+    public static final int FURNACE = 1 << 6;
+    public static final int CHEST = 1 << 7;
+    public static final int SOLID = 1 << 8;
+    public static final int PASSABLE = 1 << 9;
+    public static final int HAZARD = 1 << 10;
+    public static final int MINE_PICKAXE = 1 << 11;
+    public static final int MINE_AXE = 1 << 12;
+    public static final int MINE_SHOVEL = 1 << 13;
+    // Ore whose kind is enabled in the config
+    public static final int ORE_CONFIGURED = 1 << 14;
+
+    public static final int ORE_ANY = ORE_COAL | ORE_IRON | ORE_GOLD | ORE_DIAMOND | ORE_EMERALD | ORE_REDSTONE;
+    public static final int POI = ORE_ANY | FURNACE | CHEST;
+
+    private static int[] table;
+    private static int builtConfigRevision = -1;
+    private static World builtWorld;
+
+    private BlockClassifier() {
+    }
+
+    public static int flags(BlockState state) {
+        int[] current = table;
+        if (current == null) {
+            current = build();
+        }
+        int id = Block.getRawIdFromState(state);
+        return id < current.length ? current[id] : 0;
+    }
+
+    public static boolean is(BlockState state, int mask) {
+        return (flags(state) & mask) != 0;
+    }
+
+    // Called at the start of scan passes; rebuilds only when the config or world changed
+    public static void refresh(World world) {
+        if (table == null || world != builtWorld || AntiAFKConfig.getInstance().getRevision() != builtConfigRevision) {
+            builtWorld = world;
+            build();
+        }
+    }
+
+    private static int[] build() {
+        AntiAFKConfig config = AntiAFKConfig.getInstance();
+        int configuredOres = 0;
+        if (config.mineCoal) configuredOres |= ORE_COAL;
+        if (config.mineIron) configuredOres |= ORE_IRON;
+        if (config.mineGold) configuredOres |= ORE_GOLD;
+        if (config.mineDiamond) configuredOres |= ORE_DIAMOND;
+        if (config.mineEmerald) configuredOres |= ORE_EMERALD;
+        if (config.mineRedstone) configuredOres |= ORE_REDSTONE;
+
+        int[] built = new int[Block.STATE_IDS.size()];
+        for (BlockState state : Block.STATE_IDS) {
+            int id = Block.getRawIdFromState(state);
+            if (id < 0 || id >= built.length) continue;
+
+            int flags = classify(state);
+            if ((flags & configuredOres) != 0) {
+                flags |= ORE_CONFIGURED;
+            }
+            built[id] = flags;
+        }
+
+        table = built;
+        builtConfigRevision = config.getRevision();
+        return built;
+    }
+
+    private static int classify(BlockState state) {
+        Block block = state.getBlock();
+        int flags = oreKind(block);
+
+        if (block instanceof FurnaceBlock) flags |= FURNACE;
+        if (block instanceof ChestBlock) flags |= CHEST;
+
+        boolean hazard = state.getFluidState().isIn(FluidTags.LAVA)
+            || state.isIn(BlockTags.FIRE)
+            || state.isIn(BlockTags.CAMPFIRES)
+            || block == Blocks.MAGMA_BLOCK
+            || block == Blocks.CACTUS
+            || block == Blocks.SWEET_BERRY_BUSH
+            || block == Blocks.POWDER_SNOW
+            || block == Blocks.WITHER_ROSE;
+        if (hazard) flags |= HAZARD;
+
+        if (state.getCollisionShape(EmptyBlockView.INSTANCE, BlockPos.ORIGIN).isEmpty()) {
+            if (!hazard) flags |= PASSABLE;
+        } else {
+            flags |= SOLID;
+        }
+
+        if (state.isIn(BlockTags.PICKAXE_MINEABLE)) flags |= MINE_PICKAXE;
+        if (state.isIn(BlockTags.AXE_MINEABLE)) flags |= MINE_AXE;
+        if (state.isIn(BlockTags.SHOVEL_MINEABLE)) flags |= MINE_SHOVEL;
+
+        return flags;
+    }
+
+    private static int oreKind(Block block) {
+        if (block == Blocks.COAL_ORE || block == Blocks.DEEPSLATE_COAL_ORE) return ORE_COAL;
+        if (block == Blocks.IRON_ORE || block == Blocks.DEEPSLATE_IRON_ORE) return ORE_IRON;
+        if (block == Blocks.GOLD_ORE || block == Blocks.DEEPSLATE_GOLD_ORE) return ORE_GOLD;
+        if (block == Blocks.DIAMOND_ORE || block == Blocks.DEEPSLATE_DIAMOND_ORE) return ORE_DIAMOND;
+        if (block == Blocks.EMERALD_ORE || block == Blocks.DEEPSLATE_EMERALD_ORE) return ORE_EMERALD;
+        if (block == Blocks.REDSTONE_ORE || block == Blocks.DEEPSLATE_REDSTONE_ORE) return ORE_REDSTONE;
+        return 0;
+    }
+}
@@ -0,0 +1,172 @@
+package org.pluginmakers.antiafkplusplus.client.world;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import org.pluginmakers.antiafkplusplus.client.config.AntiAFKConfig;
+
+// Keeps the registry's section window indexed as the player moves. Only sections entering
+// the window are queued, the ones that stay inside are never read again; block changes keep
+// them current. Each tick works through the queue nearest-first and yields once the
+// configured nanosecond budget is spent. Sections indexed since the queue last drained are
+// published to queries together once it drains again.
+public class IncrementalScanner {
+    private final MinecraftClient client;
+    private final PoiRegistry registry;
+    private final LongArrayList queue = new LongArrayList();
+    private final LongArrayList pending = new LongArrayList();
+    private long[] sortScratch = new long[64];
+    private int cursor = 0;
+
+    private ClientWorld trackedWorld;
+    private boolean dirty = false;
+
+    private long passesCompleted = 0;
+    private long sectionsIndexed = 0;
+    private long sectionsEntered = 0;
+    private long budgetExhaustedTicks = 0;
+    private long onDemandSections = 0;
+
+    public IncrementalScanner(MinecraftClient client, PoiRegistry registry) {
+        this.client = client;
+        this.registry = registry;
+    }
+
+    public void tick() {
+        ClientWorld world = registry.prepare();
+        if (world == null || client.player == null) return;
+
+        followPlayer(world);
+
+        long deadline = System.nanoTime() + AntiAFKConfig.getInstance().scanBudgetNanos;
+        while (cursor < queue.size()) {
+            // Budget is checked per section, so one tick overshoots by at most one section read
+            if (System.nanoTime() >= deadline) {
+                budgetExhaustedTicks++;
+                return;
+            }
+
+            long key = queue.getLong(cursor++);
+            int sectionX = ChunkSectionPos.unpackX(key);
+            int sectionY = ChunkSectionPos.unpackY(key);
+            int sectionZ = ChunkSectionPos.unpackZ(key);
+
+            // Sections that already left the window again are refused by the registry
+            if (!registry.isIndexed(key) && registry.indexSection(world, sectionX, sectionY, sectionZ)) {
+                pending.add(key);
+                sectionsIndexed++;
+            }
+        }
+
+        if (!queue.isEmpty()) {
+            finishPass();
+        }
+    }
+
+    // Indexes and publishes the window sections a box touches right away, outside the budget,
+    // for commands that query before the scanner got there. The box is clipped to the window
+    public void indexNow(BlockPos center, int radiusXZ, int radiusY) {
+        ClientWorld world = registry.prepare();
+        if (world == null || client.player == null) return;
+
+        followPlayer(world);
+        for (int sectionX = (center.getX() - radiusXZ) >> 4; sectionX <= (center.getX() + radiusXZ) >> 4; sectionX++) {
+            for (int sectionY = (center.getY() - radiusY) >> 4; sectionY <= (center.getY() + radiusY) >> 4; sectionY++) {
+                for (int sectionZ = (center.getZ() - radiusXZ) >> 4; sectionZ <= (center.getZ() + radiusXZ) >> 4; sectionZ++) {
+                    long key = ChunkSectionPos.asLong(sectionX, sectionY, sectionZ);
+                    if (!registry.isIndexed(key)) {
+                        if (!registry.indexSection(world, sectionX, sectionY, sectionZ)) continue;
+                        sectionsIndexed++;
+                        onDemandSections++;
+                    }
+                    // Indexed by an unfinished pass or just now, either way complete
+                    registry.publish(key);
+                }
+            }
+        }
+    }
+
+    // Called when chunks load, sections that failed to index earlier may be readable now
+    public void markDirty() {
+        dirty = true;
+    }
+
+    public void reset() {
+        queue.clear();
+        pending.clear();
+        cursor = 0;
+        dirty = false;
+    }
+
+    public String getStatsSummary() {
+        return "scanner: " + passesCompleted + " passes, " + sectionsEntered + " sections entered, "
+            + sectionsIndexed + " sections indexed (" + onDemandSections + " on demand), " + budgetExhaustedTicks
+            + " ticks hit the budget";
+    }
+
+    // Moves the window with the player and queues what entered it
+    private void followPlayer(ClientWorld world) {
+        if (world != trackedWorld) {
+            // The registry was cleared for the new world, the window gets re-entered below
+            reset();
+            trackedWorld = world;
+        }
+
+        BlockPos center = client.player.getBlockPos();
+        int centerX = center.getX() >> 4;
+        int centerY = center.getY() >> 4;
+        int centerZ = center.getZ() >> 4;
+
+        int queuedBefore = queue.size();
+        boolean moved = registry.recenter(centerX, centerY, centerZ, queue);
+        sectionsEntered += queue.size() - queuedBefore;
+        if (dirty) {
+            // A chunk arrived or was resent, requeue whatever the window is still missing
+            queue.clear();
+            cursor = 0;
+            registry.collectMissing(queue);
+            dirty = false;
+            moved = true;
+        }
+        if (moved) {
+            sortQueue(centerX, centerY, centerZ);
+        }
+    }
+
+    // Orders the unprocessed part of the queue by section distance to the player
+    private void sortQueue(int centerX, int centerY, int centerZ) {
+        int remaining = queue.size() - cursor;
+        if (sortScratch.length < remaining) {
+            sortScratch = new long[Math.max(remaining, sortScratch.length * 2)];
+        }
+
+        for (int i = 0; i < remaining; i++) {
+            long key = queue.getLong(cursor + i);
+            long dx = ChunkSectionPos.unpackX(key) - centerX;
+            long dy = ChunkSectionPos.unpackY(key) - centerY;
+            long dz = ChunkSectionPos.unpackZ(key) - centerZ;
+            sortScratch[i] = ((dx * dx + dy * dy + dz * dz) << 32) | i;
+        }
+        java.util.Arrays.sort(sortScratch, 0, remaining);
+
+        LongArrayList sorted = new LongArrayList(remaining);
+        for (int i = 0; i < remaining; i++) {
+            sorted.add(queue.getLong(cursor + (int) sortScratch[i]));
+        }
+        queue.clear();
+        queue.addAll(sorted);
+        cursor = 0;
+    }
+
+    private void finishPass() {
+        for (int i = 0; i < pending.size(); i++) {
+            registry.publish(pending.getLong(i));
+        }
+        pending.clear();
+        queue.clear();
+        cursor = 0;
+        passesCompleted++;
+    }
+}
@@ -0,0 +1,291 @@
+package org.pluginmakers.antiafkplusplus.client.world;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import net.minecraft.block.BlockState;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.WorldChunk;
+
+public class PoiRegistry {
+    public enum PoiType {
+        FURNACE, CHEST, ORE
+    }
+
+    // Told about every change to what queries can see, after the change is made
+    public interface ChangeListener {
+        void onSectionChanged(int sectionX, int sectionY, int sectionZ);
+
+        void onCleared();
+    }
+
+    // Window of sections kept around the player, in sections
+    public static final int WINDOW_RADIUS_XZ = 2;
+    public static final int WINDOW_RADIUS_Y = 1;
+
+    private static final PoiType[] TYPES = PoiType.values();
+    private static final int WINDOW_WIDTH = 2 * WINDOW_RADIUS_XZ + 1;
+    private static final int WINDOW_HEIGHT = 2 * WINDOW_RADIUS_Y + 1;
+    private static final long NO_SECTION = Long.MIN_VALUE;
+
+    private final MinecraftClient client;
+    // Sliding window of indexed sections centred on the player. Slots are addressed by section
+    // coordinate modulo the window size, so moving the window only touches the slab of slots
+    // that leaves it. Sections are indexed by the incremental scanner and only become visible
+    // to queries once the scan pass that indexed them completes.
+    private final Section[] slots = new Section[WINDOW_WIDTH * WINDOW_HEIGHT * WINDOW_WIDTH];
+    private ClientWorld trackedWorld;
+    private int centerX, centerY, centerZ;
+    private boolean centered = false;
+    // Bumped whenever what queries can see changes
+    private int revision = 0;
+    private ChangeListener listener;
+
+    public PoiRegistry(MinecraftClient client) {
+        this.client = client;
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new Section();
+        }
+    }
+
+    public void setChangeListener(ChangeListener listener) {
+        this.listener = listener;
+    }
+
+    // Syncs the registry with the current client world, returns null when there is none
+    public ClientWorld prepare() {
+        return syncWorld();
+    }
+
+    // Moves the window to a new center section. Sections that leave the window are dropped and
+    // the keys of sections entering it are appended to entering. Returns false if nothing moved.
+    public boolean recenter(int sectionX, int sectionY, int sectionZ, LongArrayList entering) {
+        if (centered && sectionX == centerX && sectionY == centerY && sectionZ == centerZ) return false;
+
+        boolean wasCentered = centered;
+        int oldX = centerX, oldY = centerY, oldZ = centerZ;
+        centerX = sectionX;
+        centerY = sectionY;
+        centerZ = sectionZ;
+        centered = true;
+        revision++;
+
+        for (int x = sectionX - WINDOW_RADIUS_XZ; x <= sectionX + WINDOW_RADIUS_XZ; x++) {
+            for (int y = sectionY - WINDOW_RADIUS_Y; y <= sectionY + WINDOW_RADIUS_Y; y++) {
+                for (int z = sectionZ - WINDOW_RADIUS_XZ; z <= sectionZ + WINDOW_RADIUS_XZ; z++) {
+                    boolean wasInside = wasCentered
+                        && Math.abs(x - oldX) <= WINDOW_RADIUS_XZ
+                        && Math.abs(y - oldY) <= WINDOW_RADIUS_Y
+                        && Math.abs(z - oldZ) <= WINDOW_RADIUS_XZ;
+                    if (wasInside) continue;
+
+                    // The slot this section maps to belonged to a section of the leaving slab
+                    Section slot = slots[slotIndex(x, y, z)];
+                    long leaving = slot.key;
+                    slot.reset(NO_SECTION);
+                    if (leaving != NO_SECTION) {
+                        notifyChanged(leaving);
+                    }
+                    entering.add(ChunkSectionPos.asLong(x, y, z));
+                }
+            }
+        }
+        return true;
+    }
+
+    // Appends the keys of window sections that are not indexed, e.g. after a chunk arrived
+    public void collectMissing(LongArrayList missing) {
+        if (!centered) return;
+
+        for (int x = centerX - WINDOW_RADIUS_XZ; x <= centerX + WINDOW_RADIUS_XZ; x++) {
+            for (int y = centerY - WINDOW_RADIUS_Y; y <= centerY + WINDOW_RADIUS_Y; y++) {
+                for (int z = centerZ - WINDOW_RADIUS_XZ; z <= centerZ + WINDOW_RADIUS_XZ; z++) {
+                    if (lookup(x, y, z) == null) {
+                        missing.add(ChunkSectionPos.asLong(x, y, z));
+                    }
+                }
+            }
+        }
+    }
+
+    // Appends every position of a published section to out[type.ordinal()]
+    public boolean collectSection(int sectionX, int sectionY, int sectionZ, LongArrayList[] out) {
+        Section section = lookup(sectionX, sectionY, sectionZ);
+        if (section == null || !section.published) return false;
+
+        for (int type = 0; type < TYPES.length; type++) {
+            out[type].addAll(section.positions[type]);
+        }
+        return true;
+    }
+
+    public boolean isIndexed(long sectionKey) {
+        return lookup(ChunkSectionPos.unpackX(sectionKey), ChunkSectionPos.unpackY(sectionKey), ChunkSectionPos.unpackZ(sectionKey)) != null;
+    }
+
+    // Reads the section's blocks into the index; returns false when its chunk isn't loaded
+    // or the section is no longer inside the window
+    public boolean indexSection(ClientWorld world, int sectionX, int sectionY, int sectionZ) {
+        if (!inWindow(sectionX, sectionY, sectionZ)) return false;
+
+        ChunkSection chunkSection = SectionScanner.getLoadedSection(world, sectionX, sectionY, sectionZ);
+        if (chunkSection == null) return false; // Unloaded or out of height range, retry once the chunk arrives
+
+        Section indexed = slots[slotIndex(sectionX, sectionY, sectionZ)];
+        indexed.reset(ChunkSectionPos.asLong(sectionX, sectionY, sectionZ));
+        SectionScanner.scan(chunkSection, sectionX, sectionY, sectionZ, PoiRegistry::isPoi,
+            (x, y, z, state) -> indexed.positions[classify(state).ordinal()].add(BlockPos.asLong(x, y, z)));
+        return true;
+    }
+
+    public void publish(long sectionKey) {
+        Section section = lookup(ChunkSectionPos.unpackX(sectionKey), ChunkSectionPos.unpackY(sectionKey), ChunkSectionPos.unpackZ(sectionKey));
+        if (section != null && !section.published) {
+            section.published = true;
+            revision++;
+            notifyChanged(sectionKey);
+        }
+    }
+
+    public void onBlockChanged(BlockPos pos, BlockState oldState, BlockState newState) {
+        if (syncWorld() == null) return;
+
+        Section section = lookup(pos.getX() >> 4, pos.getY() >> 4, pos.getZ() >> 4);
+        if (section == null) return; // Outside the window or not indexed yet, the scanner reads the current state later
+
+        PoiType oldType = classify(oldState);
+        PoiType newType = classify(newState);
+        if (oldType == newType) return;
+
+        long packed = pos.asLong();
+        if (oldType != null) {
+            section.positions[oldType.ordinal()].rem(packed);
+        }
+        if (newType != null) {
+            section.positions[newType.ordinal()].add(packed);
+        }
+        revision++;
+        notifyChanged(ChunkSectionPos.asLong(pos.getX() >> 4, pos.getY() >> 4, pos.getZ() >> 4));
+    }
+
+    public void onChunkLoad(ClientWorld world, WorldChunk chunk) {
+        // A resent chunk replaces everything we knew about it
+        dropChunk(world, chunk);
+    }
+
+    public void onChunkUnload(ClientWorld world, WorldChunk chunk) {
+        dropChunk(world, chunk);
+    }
+
+    public void clear() {
+        for (Section section : slots) {
+            section.reset(NO_SECTION);
+        }
+        centered = false;
+        trackedWorld = null;
+        revision++;
+        if (listener != null) {
+            listener.onCleared();
+        }
+    }
+
+    public int getRevision() {
+        return revision;
+    }
+
+    public int getIndexedSectionCount() {
+        int count = 0;
+        for (Section section : slots) {
+            if (section.key != NO_SECTION) count++;
+        }
+        return count;
+    }
+
+    private void dropChunk(ClientWorld world, WorldChunk chunk) {
+        if (world != syncWorld() || !centered) return;
+
+        int chunkX = chunk.getPos().x;
+        int chunkZ = chunk.getPos().z;
+        for (int y = centerY - WINDOW_RADIUS_Y; y <= centerY + WINDOW_RADIUS_Y; y++) {
+            Section section = lookup(chunkX, y, chunkZ);
+            if (section != null) {
+                section.reset(NO_SECTION);
+                revision++;
+                notifyChanged(ChunkSectionPos.asLong(chunkX, y, chunkZ));
+            }
+        }
+    }
+
+    private void notifyChanged(long sectionKey) {
+        if (listener != null) {
+            listener.onSectionChanged(ChunkSectionPos.unpackX(sectionKey), ChunkSectionPos.unpackY(sectionKey),
+                ChunkSectionPos.unpackZ(sectionKey));
+        }
+    }
+
+    private ClientWorld syncWorld() {
+        ClientWorld world = client.world;
+        BlockClassifier.refresh(world);
+        if (world != trackedWorld) {
+            // Dimension change or disconnect, nothing indexed so far is valid anymore
+            clear();
+            trackedWorld = world;
+        }
+        return world;
+    }
+
+    private Section lookup(int sectionX, int sectionY, int sectionZ) {
+        if (!inWindow(sectionX, sectionY, sectionZ)) return null;
+
+        Section section = slots[slotIndex(sectionX, sectionY, sectionZ)];
+        return section.key == ChunkSectionPos.asLong(sectionX, sectionY, sectionZ) ? section : null;
+    }
+
+    private boolean inWindow(int sectionX, int sectionY, int sectionZ) {
+        return centered
+            && Math.abs(sectionX - centerX) <= WINDOW_RADIUS_XZ
+            && Math.abs(sectionY - centerY) <= WINDOW_RADIUS_Y
+            && Math.abs(sectionZ - centerZ) <= WINDOW_RADIUS_XZ;
+    }
+
+    private static int slotIndex(int sectionX, int sectionY, int sectionZ) {
+        int x = Math.floorMod(sectionX, WINDOW_WIDTH);
+        int y = Math.floorMod(sectionY, WINDOW_HEIGHT);
+        int z = Math.floorMod(sectionZ, WINDOW_WIDTH);
+        return (x * WINDOW_HEIGHT + y) * WINDOW_WIDTH + z;
+    }
+
+    private static boolean isPoi(BlockState state) {
+        return BlockClassifier.is(state, BlockClassifier.POI);
+    }
+
+    private static PoiType classify(BlockState state) {
+        int flags = BlockClassifier.flags(state);
+        if ((flags & BlockClassifier.FURNACE) != 0) return PoiType.FURNACE;
+        if ((flags & BlockClassifier.CHEST) != 0) return PoiType.CHEST;
+        if ((flags & BlockClassifier.ORE_ANY) != 0) return PoiType.ORE;
+        return null;
+    }
+
+    private static class Section {
+        final LongArrayList[] positions = new LongArrayList[TYPES.length];
+        long key = NO_SECTION;
+        boolean published = false;
+
+        Section() {
+            for (int i = 0; i < positions.length; i++) {
+                positions[i] = new LongArrayList(0);
+            }
+        }
+
+        void reset(long newKey) {
+            key = newKey;
+            published = false;
+            for (LongArrayList list : positions) {
+                list.clear();
+            }
+        }
+    }
+}
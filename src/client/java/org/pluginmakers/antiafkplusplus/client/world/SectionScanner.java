@@ -0,0 +1,72 @@
+package org.pluginmakers.antiafkplusplus.client.world;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.WorldChunk;
+
+import java.util.function.Predicate;
+
+// Section level scan path. Sections are rejected by emptiness and by their block state
+// palette before any per-block read happens, and unloaded chunks are never touched.
+public final class SectionScanner {
+    public interface Visitor {
+        void visit(int x, int y, int z, BlockState state);
+    }
+
+    private static long emptySkipped = 0;
+    private static long paletteSkipped = 0;
+    private static long scanned = 0;
+
+    private SectionScanner() {
+    }
+
+    public static ChunkSection getLoadedSection(World world, int sectionX, int sectionY, int sectionZ) {
+        int sectionIndex = world.sectionCoordToIndex(sectionY);
+        if (sectionIndex < 0 || sectionIndex >= world.countVerticalSections()) return null;
+
+        WorldChunk chunk = world.getChunkManager().getWorldChunk(sectionX, sectionZ);
+        if (chunk == null) return null;
+
+        return chunk.getSection(sectionIndex);
+    }
+
+    // Visits every block of the section matching target, with world coordinates.
+    // Returns false when the section was skipped without reading per-block states.
+    public static boolean scan(ChunkSection section, int sectionX, int sectionY, int sectionZ,
+                               Predicate<BlockState> target, Visitor visitor) {
+        if (section.isEmpty()) {
+            emptySkipped++;
+            return false;
+        }
+        if (!section.hasAny(target)) {
+            paletteSkipped++;
+            return false;
+        }
+        scanned++;
+
+        int baseX = sectionX << 4;
+        int baseY = sectionY << 4;
+        int baseZ = sectionZ << 4;
+
+        for (int y = 0; y < 16; y++) {
+            for (int z = 0; z < 16; z++) {
+                for (int x = 0; x < 16; x++) {
+                    BlockState state = section.getBlockState(x, y, z);
+                    if (target.test(state)) {
+                        visitor.visit(baseX + x, baseY + y, baseZ + z, state);
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    public static String getStatsSummary() {
+        long total = emptySkipped + paletteSkipped + scanned;
+        if (total == 0) return "No sections scanned yet";
+
+        return "sections: " + scanned + " scanned, " + emptySkipped + " empty, "
+            + paletteSkipped + " palette-skipped (" + (emptySkipped + paletteSkipped) * 100 / total + "% skipped)";
+    }
+}
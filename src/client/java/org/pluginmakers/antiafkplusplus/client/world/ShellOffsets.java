@@ -0,0 +1,83 @@
+package org.pluginmakers.antiafkplusplus.client.world;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+
+// Section offsets of a box around a center section, precomputed once per radius.
+// Callers order them by exact distance bound for a given center to walk outwards.
+public final class ShellOffsets {
+    private static final Long2ObjectOpenHashMap<ShellOffsets> CACHE = new Long2ObjectOpenHashMap<>();
+
+    public final int radiusXZ;
+    public final int radiusY;
+    public final int size;
+    private final int[] offsetX;
+    private final int[] offsetY;
+    private final int[] offsetZ;
+
+    private ShellOffsets(int radiusXZ, int radiusY) {
+        this.radiusXZ = radiusXZ;
+        this.radiusY = radiusY;
+        this.size = (2 * radiusXZ + 1) * (2 * radiusY + 1) * (2 * radiusXZ + 1);
+        this.offsetX = new int[size];
+        this.offsetY = new int[size];
+        this.offsetZ = new int[size];
+
+        int i = 0;
+        for (int x = -radiusXZ; x <= radiusXZ; x++) {
+            for (int y = -radiusY; y <= radiusY; y++) {
+                for (int z = -radiusXZ; z <= radiusXZ; z++) {
+                    offsetX[i] = x;
+                    offsetY[i] = y;
+                    offsetZ[i] = z;
+                    i++;
+                }
+            }
+        }
+    }
+
+    // Radii are in sections
+    public static ShellOffsets of(int radiusXZ, int radiusY) {
+        long key = ((long) radiusXZ << 32) | radiusY;
+        ShellOffsets offsets = CACHE.get(key);
+        if (offsets == null) {
+            offsets = new ShellOffsets(radiusXZ, radiusY);
+            CACHE.put(key, offsets);
+        }
+        return offsets;
+    }
+
+    public int x(int index) {
+        return offsetX[index];
+    }
+
+    public int y(int index) {
+        return offsetY[index];
+    }
+
+    public int z(int index) {
+        return offsetZ[index];
+    }
+
+    // Smallest squared block distance from the center to any block of the offset section
+    public long squaredBound(int index, int localX, int localY, int localZ) {
+        long dx = axisGap(offsetX[index], localX);
+        long dy = axisGap(offsetY[index], localY);
+        long dz = axisGap(offsetZ[index], localZ);
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    // Fills order with (bound << 16 | index) sorted ascending, i.e. nearest sections first
+    public void sortByBound(int localX, int localY, int localZ, long[] order) {
+        for (int i = 0; i < size; i++) {
+            order[i] = (squaredBound(i, localX, localY, localZ) << 16) | i;
+        }
+        java.util.Arrays.sort(order, 0, size);
+    }
+
+    // Blocks between a center at local coordinate 0..15 and the nearest face of a section offset sections away
+    private static int axisGap(int offset, int local) {
+        if (offset > 0) return offset * 16 - local;
+        if (offset < 0) return -offset * 16 - 15 + local;
+        return 0;
+    }
+}
@@ -0,0 +1,307 @@
+package org.pluginmakers.antiafkplusplus.client.world;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkSectionPos;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+// Single entry point for block searches. Requests around the same center are answered from
+// one merged pass over the POI registry, so subsystems asking about the same area share the
+// work. The pass walks sections nearest-first and only goes as far out as the queries so far
+// actually needed. It lasts until the center, world or needed radius changes; a change the
+// registry reports for a section the pass already visited re-collects just that section.
+// Only sections published by the IncrementalScanner are seen, queries never read blocks themselves.
+public class SpatialQueryService implements PoiRegistry.ChangeListener {
+    public enum Caller {
+        AI_FURNACE, AI_ORE, AI_CHEST, AUTOMATION_FURNACE, AUTOMATION_CHEST, COMMAND_MARKCHEST
+    }
+
+    private static final int TYPE_COUNT = PoiRegistry.PoiType.values().length;
+
+    private final MinecraftClient client;
+    private final PoiRegistry registry;
+    private final LongArrayList[] passResults = new LongArrayList[TYPE_COUNT];
+    private final long[] hits = new long[Caller.values().length];
+    private final long[] misses = new long[Caller.values().length];
+    private final BlockPos.Mutable probe = new BlockPos.Mutable();
+    private final LongArrayList nearestFound = new LongArrayList();
+    private long patchedSections = 0;
+
+    // State of the current pass
+    private ClientWorld passWorld;
+    private boolean passValid = false;
+    private long passCenter;
+    private final LongOpenHashSet visitedSections = new LongOpenHashSet();
+    private ShellOffsets shell = ShellOffsets.of(1, 1);
+    private long[] shellOrder = new long[shell.size];
+    private int cursor;
+
+    // Candidate heap of the running nearest query, entries are (squared distance << 32 | candidate index)
+    private long[] heap = new long[64];
+    private int heapSize;
+
+    public SpatialQueryService(MinecraftClient client, PoiRegistry registry) {
+        this.client = client;
+        this.registry = registry;
+        for (int i = 0; i < TYPE_COUNT; i++) {
+            passResults[i] = new LongArrayList();
+        }
+        registry.setChangeListener(this);
+    }
+
+    public List<BlockPos> findWithin(Caller caller, PoiRegistry.PoiType type, BlockPos center, int radiusXZ, int radiusY) {
+        List<BlockPos> result = new ArrayList<>();
+        ClientWorld world = beginQuery(center, radiusXZ, radiusY);
+        if (world == null) return result;
+
+        // A box query needs every section that can intersect the box
+        long limit = squaredCornerDistance(radiusXZ, radiusY);
+        boolean advanced = false;
+        while (cursor < shell.size && (shellOrder[cursor] >>> 16) <= limit) {
+            visitNextSection();
+            advanced = true;
+        }
+        count(caller, advanced);
+
+        LongArrayList positions = passResults[type.ordinal()];
+        for (int i = 0; i < positions.size(); i++) {
+            long packed = positions.getLong(i);
+            if (isWithin(packed, center, radiusXZ, radiusY)) {
+                result.add(BlockPos.fromLong(packed));
+            }
+        }
+        return result;
+    }
+
+    public BlockPos findNearest(Caller caller, PoiRegistry.PoiType type, BlockPos center, int radiusXZ, int radiusY, Predicate<BlockPos> filter) {
+        BlockPos.Mutable result = new BlockPos.Mutable();
+        return findNearest(caller, type, center, radiusXZ, radiusY, filter, result) ? result.toImmutable() : null;
+    }
+
+    // Allocation free variant, writes the position into out. The filter is handed a reused
+    // position and must not keep it.
+    public boolean findNearest(Caller caller, PoiRegistry.PoiType type, BlockPos center, int radiusXZ, int radiusY,
+                               Predicate<BlockPos> filter, BlockPos.Mutable out) {
+        if (nearest(caller, type, center, radiusXZ, radiusY, filter, 1) == 0) return false;
+
+        out.set(nearestFound.getLong(0));
+        return true;
+    }
+
+    // Up to limit matches, nearest first
+    public List<BlockPos> findNearest(Caller caller, PoiRegistry.PoiType type, BlockPos center, int radiusXZ, int radiusY,
+                                      int limit, Predicate<BlockPos> filter) {
+        int found = nearest(caller, type, center, radiusXZ, radiusY, filter, limit);
+        List<BlockPos> result = new ArrayList<>(found);
+        for (int i = 0; i < found; i++) {
+            result.add(BlockPos.fromLong(nearestFound.getLong(i)));
+        }
+        return result;
+    }
+
+    // Leaves the packed positions of the matches in nearestFound and returns how many there are
+    private int nearest(Caller caller, PoiRegistry.PoiType type, BlockPos center, int radiusXZ, int radiusY,
+                        Predicate<BlockPos> filter, int limit) {
+        nearestFound.clear();
+        ClientWorld world = beginQuery(center, radiusXZ, radiusY);
+        if (world == null || limit <= 0) return 0;
+
+        LongArrayList candidates = passResults[type.ordinal()];
+        long bound = squaredCornerDistance(radiusXZ, radiusY);
+        int consumed = 0;
+        boolean advanced = false;
+        heapSize = 0;
+
+        while (true) {
+            // Queue candidates discovered since the last round
+            for (; consumed < candidates.size(); consumed++) {
+                long packed = candidates.getLong(consumed);
+                if (isWithin(packed, center, radiusXZ, radiusY)) {
+                    heapPush((squaredDistance(packed, center) << 32) | consumed);
+                }
+            }
+
+            // Anything closer than the nearest unvisited section is final
+            long nextBound = cursor < shell.size ? shellOrder[cursor] >>> 16 : Long.MAX_VALUE;
+            while (heapSize > 0 && (heap[0] >>> 32) <= nextBound) {
+                long packed = candidates.getLong((int) heapPop());
+                probe.set(packed);
+                if (filter == null || filter.test(probe)) {
+                    nearestFound.add(packed);
+                    if (nearestFound.size() == limit) {
+                        count(caller, advanced);
+                        return limit;
+                    }
+                }
+            }
+
+            if (cursor >= shell.size || nextBound > bound) {
+                count(caller, advanced);
+                return nearestFound.size();
+            }
+            visitNextSection();
+            advanced = true;
+        }
+    }
+
+    public long getHits(Caller caller) {
+        return hits[caller.ordinal()];
+    }
+
+    public long getMisses(Caller caller) {
+        return misses[caller.ordinal()];
+    }
+
+    // Changes whenever the set of positions queries can return may have changed
+    public int getIndexRevision() {
+        return registry.getRevision();
+    }
+
+    // Drops the whole pass, the next query starts over
+    public void invalidate() {
+        passValid = false;
+    }
+
+    // Replaces what the pass collected from this section with what the registry has now
+    @Override
+    public void onSectionChanged(int sectionX, int sectionY, int sectionZ) {
+        if (!passValid || !visitedSections.contains(ChunkSectionPos.asLong(sectionX, sectionY, sectionZ))) return;
+
+        int minX = sectionX << 4, minY = sectionY << 4, minZ = sectionZ << 4;
+        for (LongArrayList positions : passResults) {
+            int kept = 0;
+            for (int i = 0; i < positions.size(); i++) {
+                long packed = positions.getLong(i);
+                // Kept unless all three offsets from the section's corner are within 0..15
+                if (((BlockPos.unpackLongX(packed) - minX) | (BlockPos.unpackLongY(packed) - minY)
+                    | (BlockPos.unpackLongZ(packed) - minZ)) >>> 4 != 0) {
+                    positions.set(kept++, packed);
+                }
+            }
+            positions.size(kept);
+        }
+        registry.collectSection(sectionX, sectionY, sectionZ, passResults);
+        patchedSections++;
+    }
+
+    @Override
+    public void onCleared() {
+        invalidate();
+    }
+
+    public String getStatsSummary() {
+        StringBuilder builder = new StringBuilder();
+        for (Caller caller : Caller.values()) {
+            long total = hits[caller.ordinal()] + misses[caller.ordinal()];
+            if (total == 0) continue;
+
+            if (builder.length() > 0) builder.append('\n');
+            builder.append(caller.name().toLowerCase())
+                .append(": ").append(hits[caller.ordinal()]).append(" hits, ")
+                .append(misses[caller.ordinal()]).append(" misses (")
+                .append(hits[caller.ordinal()] * 100 / total).append("% shared)");
+        }
+        if (builder.length() == 0) return "No spatial queries yet";
+        return builder.append("\n").append(patchedSections).append(" pass sections re-collected after changes").toString();
+    }
+
+    // Starts a new pass when the world, center or needed radius changed, or the pass was dropped
+    private ClientWorld beginQuery(BlockPos center, int radiusXZ, int radiusY) {
+        ClientWorld world = registry.prepare();
+        if (world == null) return null;
+
+        int sectionRadiusXZ = Math.max(shell.radiusXZ, (radiusXZ + 15) >> 4);
+        int sectionRadiusY = Math.max(shell.radiusY, (radiusY + 15) >> 4);
+        boolean grown = sectionRadiusXZ != shell.radiusXZ || sectionRadiusY != shell.radiusY;
+        if (grown) {
+            shell = ShellOffsets.of(sectionRadiusXZ, sectionRadiusY);
+            shellOrder = new long[shell.size];
+        }
+
+        long centerKey = center.asLong();
+        if (grown || !passValid || world != passWorld || centerKey != passCenter) {
+            for (LongArrayList positions : passResults) {
+                positions.clear();
+            }
+            visitedSections.clear();
+            shell.sortByBound(center.getX() & 15, center.getY() & 15, center.getZ() & 15, shellOrder);
+            cursor = 0;
+            passWorld = world;
+            passValid = true;
+            passCenter = centerKey;
+        }
+        return world;
+    }
+
+    private void visitNextSection() {
+        int index = (int) (shellOrder[cursor++] & 0xFFFF);
+        int sectionX = (BlockPos.unpackLongX(passCenter) >> 4) + shell.x(index);
+        int sectionY = (BlockPos.unpackLongY(passCenter) >> 4) + shell.y(index);
+        int sectionZ = (BlockPos.unpackLongZ(passCenter) >> 4) + shell.z(index);
+        // Remembered even while unpublished, publishing it later is a change like any other
+        visitedSections.add(ChunkSectionPos.asLong(sectionX, sectionY, sectionZ));
+        registry.collectSection(sectionX, sectionY, sectionZ, passResults);
+    }
+
+    private void count(Caller caller, boolean advanced) {
+        if (advanced) {
+            misses[caller.ordinal()]++;
+        } else {
+            hits[caller.ordinal()]++;
+        }
+    }
+
+    private void heapPush(long entry) {
+        if (heapSize == heap.length) {
+            heap = java.util.Arrays.copyOf(heap, heap.length * 2);
+        }
+        int i = heapSize++;
+        while (i > 0) {
+            int parent = (i - 1) >> 1;
+            if (heap[parent] <= entry) break;
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = entry;
+    }
+
+    // Returns the candidate index of the smallest entry
+    private long heapPop() {
+        long top = heap[0];
+        long last = heap[--heapSize];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) break;
+            if (child + 1 < heapSize && heap[child + 1] < heap[child]) child++;
+            if (heap[child] >= last) break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        if (heapSize > 0) heap[i] = last;
+        return top & 0xFFFFFFFFL;
+    }
+
+    private static boolean isWithin(long packed, BlockPos center, int radiusXZ, int radiusY) {
+        return Math.abs(BlockPos.unpackLongX(packed) - center.getX()) <= radiusXZ
+            && Math.abs(BlockPos.unpackLongY(packed) - center.getY()) <= radiusY
+            && Math.abs(BlockPos.unpackLongZ(packed) - center.getZ()) <= radiusXZ;
+    }
+
+    private static long squaredCornerDistance(int radiusXZ, int radiusY) {
+        return 2L * radiusXZ * radiusXZ + (long) radiusY * radiusY;
+    }
+
+    private static long squaredDistance(long packed, BlockPos center) {
+        long dx = BlockPos.unpackLongX(packed) - center.getX();
+        long dy = BlockPos.unpackLongY(packed) - center.getY();
+        long dz = BlockPos.unpackLongZ(packed) - center.getZ();
+        return dx * dx + dy * dy + dz * dz;
+    }
+}
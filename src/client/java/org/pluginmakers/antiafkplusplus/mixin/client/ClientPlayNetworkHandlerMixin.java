@@ -0,0 +1,37 @@
+package org.pluginmakers.antiafkplusplus.mixin.client;
+
+import net.minecraft.client.network.ClientPlayNetworkHandler;
+import net.minecraft.network.packet.s2c.play.CloseScreenS2CPacket;
+import net.minecraft.network.packet.s2c.play.InventoryS2CPacket;
+import net.minecraft.network.packet.s2c.play.OpenScreenS2CPacket;
+import net.minecraft.network.packet.s2c.play.ScreenHandlerSlotUpdateS2CPacket;
+import org.pluginmakers.antiafkplusplus.client.AntiAFKManager;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+// Screen handler packets are rescheduled onto the client thread before being applied, so TAIL
+// only runs there, after the handler has been updated
+@Mixin(ClientPlayNetworkHandler.class)
+public abstract class ClientPlayNetworkHandlerMixin {
+    @Inject(method = "onOpenScreen", at = @At("TAIL"))
+    private void antiafkplusplus$onOpenScreen(OpenScreenS2CPacket packet, CallbackInfo ci) {
+        AntiAFKManager.getInstance().getContainerSessions().onScreenOpened(packet.getSyncId());
+    }
+
+    @Inject(method = "onInventory", at = @At("TAIL"))
+    private void antiafkplusplus$onInventory(InventoryS2CPacket packet, CallbackInfo ci) {
+        AntiAFKManager.getInstance().getContainerSessions().onHandlerSynced(packet.syncId());
+    }
+
+    @Inject(method = "onScreenHandlerSlotUpdate", at = @At("TAIL"))
+    private void antiafkplusplus$onScreenHandlerSlotUpdate(ScreenHandlerSlotUpdateS2CPacket packet, CallbackInfo ci) {
+        AntiAFKManager.getInstance().getContainerSessions().onSlotUpdated(packet.getSyncId());
+    }
+
+    @Inject(method = "onCloseScreen", at = @At("TAIL"))
+    private void antiafkplusplus$onCloseScreen(CloseScreenS2CPacket packet, CallbackInfo ci) {
+        AntiAFKManager.getInstance().getContainerSessions().onScreenClosed(packet.getSyncId());
+    }
+}
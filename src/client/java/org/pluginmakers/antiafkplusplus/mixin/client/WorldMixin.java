@@ -0,0 +1,22 @@
+package org.pluginmakers.antiafkplusplus.mixin.client;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import org.pluginmakers.antiafkplusplus.client.AntiAFKManager;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(World.class)
+public abstract class WorldMixin {
+    // Covers server block updates, chunk delta updates and locally predicted changes on the client world
+    @Inject(method = "onBlockStateChanged", at = @At("HEAD"))
+    private void antiafkplusplus$onBlockStateChanged(BlockPos pos, BlockState oldState, BlockState newState, CallbackInfo ci) {
+        if ((Object) this instanceof ClientWorld) {
+            AntiAFKManager.getInstance().onBlockChanged(pos, oldState, newState);
+        }
+    }
+}